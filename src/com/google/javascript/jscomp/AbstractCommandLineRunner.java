@@ -29,18 +29,24 @@ import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 import com.google.common.io.Files;
+import com.google.javascript.jscomp.Compiler.ModuleOutput;
 import com.google.javascript.jscomp.CompilerOptions.TweakProcessing;
 import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.TokenStream;
 import com.google.protobuf.CodedOutputStream;
 
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.Flushable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintStream;
@@ -133,6 +139,14 @@ abstract class AbstractCommandLineRunner<A extends Compiler,
 
   private final RunTimeStats runTimeStats = new RunTimeStats();
 
+  // State kept between the compiles of daemon mode.
+  private InputStream daemonInput = System.in;
+  private ExternsSnapshot daemonExternsSnapshot = null;
+  private File daemonAstCacheDir = null;
+  private final Map<String, HashCode> daemonOutputHashes = Maps.newHashMap();
+  private int daemonOutputsWritten = 0;
+  private int daemonOutputsUnchanged = 0;
+
   AbstractCommandLineRunner() {
     this(System.out, System.err);
   }
@@ -168,6 +182,15 @@ abstract class AbstractCommandLineRunner<A extends Compiler,
     this.exitCodeReceiverForTesting = exitCodeReceiver;
   }
 
+  /**
+   * Sets the stream that daemon mode reads the names of changed files from,
+   * in place of standard input.
+   */
+  @VisibleForTesting
+  void setDaemonInput(InputStream daemonInput) {
+    this.daemonInput = daemonInput;
+  }
+
   /**
    * Returns whether we're in test mode.
    */
@@ -311,6 +334,25 @@ abstract class AbstractCommandLineRunner<A extends Compiler,
     options.sourceMapDetailLevel = config.sourceMapDetailLevel;
     options.sourceMapFormat = config.sourceMapFormat;
 
+    if (!config.astCacheDir.isEmpty()) {
+      if (config.astCacheMaxMegabytes <= 0) {
+        throw new FlagUsageException(
+            "ast_cache_max_mb must be a positive number.");
+      }
+      options.setAstCacheDirectory(config.astCacheDir);
+      options.setAstCacheMaxBytes(config.astCacheMaxMegabytes * 1024L * 1024);
+    } else if (config.daemon) {
+      // Lets each compile of the daemon parse only the inputs that changed.
+      if (daemonAstCacheDir == null) {
+        daemonAstCacheDir = Files.createTempDir();
+      }
+      options.setAstCacheDirectory(daemonAstCacheDir.getPath());
+    }
+
+    if (!config.passProfile.isEmpty()) {
+      options.setPassProfileFile(config.passProfile);
+    }
+
     if (!config.variableMapInputFile.equals("")) {
       options.inputVariableMap =
           VariableMap.load(config.variableMapInputFile);
@@ -375,11 +417,15 @@ abstract class AbstractCommandLineRunner<A extends Compiler,
       PhaseOptimizer.randomizeLoops();
     }
     try {
+      long start = System.currentTimeMillis();
       for (int i = 0; i < runs && result == 0; i++) {
         runTimeStats.recordStartRun();
         result = doRun();
         runTimeStats.recordEndRun();
       }
+      if (config.daemon) {
+        result = runDaemon(result, start);
+      }
     } catch (AbstractCommandLineRunner.FlagUsageException e) {
       System.err.println(e.getMessage());
       result = -1;
@@ -407,6 +453,98 @@ abstract class AbstractCommandLineRunner<A extends Compiler,
     }
   }
 
+  /**
+   * Recompiles each time a list of changed files is read from the daemon
+   * input, until the input ends. The list has one file name per line, and
+   * ends with an empty line.
+   *
+   * Each compile starts from scratch in the same JVM, but parses only what
+   * changed: the externs are taken from a snapshot that is parsed again only
+   * when one of them changes, and the inputs from the AST cache. Outputs
+   * that are the same as the last ones written are not written again.
+   *
+   * @param result The exit status of the first compile.
+   * @param start When the first compile started.
+   * @return The exit status of the last compile.
+   */
+  private int runDaemon(int result, long start) throws IOException {
+    try {
+      finishDaemonCompile(start);
+      BufferedReader changes = new BufferedReader(
+          new InputStreamReader(daemonInput, Charsets.UTF_8));
+      Set<String> changed = Sets.newLinkedHashSet();
+      for (String line = changes.readLine(); line != null;
+           line = changes.readLine()) {
+        line = line.trim();
+        if (!line.isEmpty()) {
+          changed.add(line);
+          continue;
+        }
+        if (changed.isEmpty()) {
+          continue;
+        }
+
+        if (daemonExternsSnapshot != null) {
+          for (SourceFile extern : daemonExternsSnapshot.getExterns()) {
+            if (changed.contains(extern.getName())) {
+              daemonExternsSnapshot = null;
+              break;
+            }
+          }
+        }
+        changed.clear();
+
+        start = System.currentTimeMillis();
+        try {
+          result = doRun();
+        } catch (FlagUsageException e) {
+          // An input may be missing for a moment while it is being saved;
+          // the next change will bring it back.
+          err.println(e.getMessage());
+          result = -1;
+        } catch (IOException e) {
+          // The same goes for an input that can not be read for a moment.
+          err.println(e.getMessage());
+          result = -2;
+        } catch (RuntimeException e) {
+          // A failed compile is reported, and the daemon waits for the next
+          // change, which may fix it.
+          e.printStackTrace(err);
+          result = -2;
+        }
+        finishDaemonCompile(start);
+      }
+      return result;
+    } finally {
+      if (daemonAstCacheDir != null) {
+        File[] files = daemonAstCacheDir.listFiles();
+        if (files != null) {
+          for (File file : files) {
+            file.delete();
+          }
+        }
+        daemonAstCacheDir.delete();
+      }
+    }
+  }
+
+  /**
+   * Writes the output file of a daemon compile, and reports how long the
+   * compile took and how many outputs it changed.
+   */
+  private void finishDaemonCompile(long start) throws IOException {
+    if (!config.jsOutputFile.isEmpty() && jsOutput instanceof Closeable) {
+      ((Closeable) jsOutput).close();
+    }
+    err.println("Compiled in " + (System.currentTimeMillis() - start)
+        + " ms; " + daemonOutputsWritten + " of "
+        + (daemonOutputsWritten + daemonOutputsUnchanged)
+        + " outputs changed.");
+    err.flush();
+    daemonOutputsWritten = 0;
+    daemonOutputsUnchanged = 0;
+  }
+
   /**
    * Returns the PrintStream for writing errors associated with this
    * AbstractCommandLineRunner.
@@ -659,6 +797,16 @@ abstract class AbstractCommandLineRunner<A extends Compiler,
   @VisibleForTesting
   void writeModuleOutput(Appendable out, JSModule m)
       throws FlagUsageException, IOException {
+    writeModuleOutput(out, m, compiler.toSource(m), compiler.getSourceMap());
+  }
+
+  /**
+   * Writes the code of a module, in the wrapper of the module.
+   *
+   * @param sourceMap The source map of the code, or null if there is none.
+   */
+  private void writeModuleOutput(Appendable out, JSModule m, String code,
+      SourceMap sourceMap) throws FlagUsageException, IOException {
     if (parsedModuleWrappers == null) {
       parsedModuleWrappers = parseModuleWrappers(
           config.moduleWrapper,
@@ -668,7 +816,7 @@ abstract class AbstractCommandLineRunner<A extends Compiler,
 
     String fileName = getModuleOutputFileName(m);
     String baseName = new File(fileName).getName();
-    writeOutput(out, compiler, compiler.toSource(m),
+    writeOutput(out, sourceMap, code,
         parsedModuleWrappers.get(m.getName()).replace("%basename%", baseName),
         "%s", null);
   }
@@ -681,6 +829,18 @@ abstract class AbstractCommandLineRunner<A extends Compiler,
       String wrapper, String codePlaceholder,
       @Nullable Function<String, String> escaper)
       throws IOException {
+    writeOutput(out, compiler == null ? null : compiler.getSourceMap(), code,
+        wrapper, codePlaceholder, escaper);
+  }
+
+  /**
+   * Writes code to an output stream, like the other writeOutput, and adjusts
+   * the offsets of the given source map of the code.
+   */
+  private static void writeOutput(Appendable out,
+      @Nullable SourceMap sourceMap, String code, String wrapper,
+      String codePlaceholder, @Nullable Function<String, String> escaper)
+      throws IOException {
     int pos = wrapper.indexOf(codePlaceholder);
     if (pos != -1) {
       String prefix = "";
@@ -702,8 +862,8 @@ abstract class AbstractCommandLineRunner<A extends Compiler,
 
       // If we have a source map, adjust its offsets to match
       // the code WITHIN the wrapper.
-      if (compiler != null && compiler.getSourceMap() != null) {
-        compiler.getSourceMap().setWrapperPrefix(prefix);
+      if (sourceMap != null) {
+        sourceMap.setWrapperPrefix(prefix);
       }
 
     } else {
@@ -755,8 +915,22 @@ abstract class AbstractCommandLineRunner<A extends Compiler,
       jsOutput = streamToLegacyOutputWriter((OutputStream) jsOutput);
     }
 
+    if (config.daemon) {
+      if (config.jsOutputFile.isEmpty() && config.module.isEmpty()) {
+        throw new FlagUsageException("daemon requires js_output_file or "
+            + "module, as it can not write outputs to stdout.");
+      }
+      if (daemonExternsSnapshot == null
+          || !daemonExternsSnapshot.isCompatibleWith(options)) {
+        daemonExternsSnapshot = ExternsSnapshot.create(externs, options);
+      }
+      compiler.setExternsSnapshot(daemonExternsSnapshot);
+    }
+
     List<String> jsFiles = config.js;
-    List<String> moduleSpecs = config.module;
+    // Copied, since the specs are edited below and daemon mode uses them
+    // for every compile.
+    List<String> moduleSpecs = Lists.newArrayList(config.module);
 
     boolean createCommonJsModules = false;
     if (options.processCommonJSModules) {
@@ -927,7 +1101,9 @@ abstract class AbstractCommandLineRunner<A extends Compiler,
       mapOut = fileNameToOutputWriter2(expandSourceMapPath(options, null));
     }
 
-    for (JSModule m : modules) {
+    // The modules are printed, possibly in parallel, before any is written.
+    for (ModuleOutput output : compiler.toModuleOutputs(modules)) {
+      JSModule m = output.getModule();
       if (shouldGenerateMapPerModule(options)) {
         mapOut = fileNameToOutputWriter2(expandSourceMapPath(options, m));
       }
@@ -935,14 +1111,10 @@ abstract class AbstractCommandLineRunner<A extends Compiler,
       Writer writer =
           fileNameToLegacyOutputWriter(getModuleOutputFileName(m));
 
-      if (options.sourceMapOutputPath != null) {
-        compiler.getSourceMap().reset();
-      }
-
-      writeModuleOutput(writer, m);
+      writeModuleOutput(writer, m, output.getCode(), output.getSourceMap());
 
       if (options.sourceMapOutputPath != null) {
-        compiler.getSourceMap().appendTo(mapOut, m.getName());
+        output.getSourceMap().appendTo(mapOut, m.getName());
       }
 
       writer.close();
@@ -1100,6 +1272,9 @@ abstract class AbstractCommandLineRunner<A extends Compiler,
     if (fileName == null) {
       return null;
     }
+    if (config.daemon) {
+      return new DaemonOutputWriter(fileName, true);
+    }
     if (testMode) {
       return new StringWriter();
     }
@@ -1115,6 +1290,9 @@ abstract class AbstractCommandLineRunner<A extends Compiler,
     if (fileName == null) {
       return null;
     }
+    if (config.daemon) {
+      return new DaemonOutputWriter(fileName, false);
+    }
     if (testMode) {
       return new StringWriter();
     }
@@ -1148,6 +1326,49 @@ abstract class AbstractCommandLineRunner<A extends Compiler,
     }
   }
 
+  /**
+   * Collects an output file of daemon mode, and writes it when closed, unless
+   * it is the same as the last content written to the file.
+   */
+  private class DaemonOutputWriter extends StringWriter {
+    private final String fileName;
+    private final boolean legacyCharset;
+    private boolean closed = false;
+
+    DaemonOutputWriter(String fileName, boolean legacyCharset) {
+      this.fileName = fileName;
+      this.legacyCharset = legacyCharset;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+
+      String content = toString();
+      HashCode hash = Hashing.sha1().newHasher().putString(content).hash();
+      if (hash.equals(daemonOutputHashes.get(fileName))
+          && (testMode || new File(fileName).exists())) {
+        daemonOutputsUnchanged++;
+        return;
+      }
+      daemonOutputHashes.put(fileName, hash);
+      daemonOutputsWritten++;
+      if (testMode) {
+        return;
+      }
+
+      OutputStream stream = filenameToOutputStream(fileName);
+      Writer out = legacyCharset
+          ? streamToLegacyOutputWriter(stream)
+          : streamToOutputWriter2(stream);
+      out.write(content);
+      out.close();
+    }
+  }
+
   /**
    * Create a writer with the newer output charset.
    */
@@ -2076,6 +2297,49 @@ abstract class AbstractCommandLineRunner<A extends Compiler,
       this.angularPass = angularPass;
       return this;
     }
+
+    private String astCacheDir = "";
+
+    /**
+     * Sets a directory to cache parsed ASTs in, so that later runs can skip
+     * parsing the inputs that did not change.
+     */
+    CommandLineConfig setAstCacheDir(String astCacheDir) {
+      this.astCacheDir = astCacheDir;
+      return this;
+    }
+
+    private int astCacheMaxMegabytes = 256;
+
+    /**
+     * Sets how many megabytes the AST cache may take up on disk.
+     */
+    CommandLineConfig setAstCacheMaxMegabytes(int astCacheMaxMegabytes) {
+      this.astCacheMaxMegabytes = astCacheMaxMegabytes;
+      return this;
+    }
+
+    private boolean daemon = false;
+
+    /**
+     * Sets whether to keep running after the first compile, and recompile
+     * whenever the names of changed files are read from standard input.
+     */
+    CommandLineConfig setDaemon(boolean daemon) {
+      this.daemon = daemon;
+      return this;
+    }
+
+    private String passProfile = "";
+
+    /**
+     * Sets a file to keep the profile of the optimization passes in, which
+     * orders the passes of the optimization loops.
+     */
+    CommandLineConfig setPassProfile(String passProfile) {
+      this.passProfile = passProfile;
+      return this;
+    }
   }
 
   /**
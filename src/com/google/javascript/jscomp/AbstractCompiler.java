@@ -23,6 +23,7 @@ import com.google.javascript.jscomp.parsing.Config;
 import com.google.javascript.jscomp.type.ReverseAbstractInterpreter;
 import com.google.javascript.rhino.InputId;
 import com.google.javascript.rhino.Node;
+import com.google.javascript.rhino.SubtreeSummaries;
 import com.google.javascript.rhino.head.ErrorReporter;
 import com.google.javascript.rhino.head.ast.AstRoot;
 import com.google.javascript.rhino.jstype.JSTypeRegistry;
@@ -191,6 +192,12 @@ public abstract class AbstractCompiler implements SourceExcerptProvider {
    */
   abstract Supplier<String> getUniqueNameIdSupplier();
 
+  /**
+   * The summaries of the functions and scripts of the AST, see
+   * {@link SubtreeSummaries}.
+   */
+  abstract SubtreeSummaries getSubtreeSummaries();
+
   /**
    * @return Whether any errors have been encountered that
    *     should stop the compilation process.
@@ -227,6 +234,12 @@ public abstract class AbstractCompiler implements SourceExcerptProvider {
    */
   abstract Config getParserConfig();
 
+  /**
+   * Returns the cache to load parsed ASTs from, or null if parsed ASTs
+   * are not cached.
+   */
+  abstract PersistentAstCache getAstCache();
+
   /**
    * Returns true if type checking is enabled.
    */
@@ -305,6 +318,15 @@ public abstract class AbstractCompiler implements SourceExcerptProvider {
    */
   abstract void process(CompilerPass pass);
 
+  /**
+   * Runs the tasks on up to {@code threadCount} threads, and waits for all of
+   * them to finish. While a task runs, the code changes and errors it reports
+   * are held back; they are reported on the calling thread, in task order,
+   * once every task is done. A change handler added by a task only hears
+   * about the changes made by that task.
+   */
+  abstract void runInParallel(List<? extends Runnable> tasks, int threadCount);
+
   /**
    * Returns the root node of the AST, which includes both externs and source.
    */
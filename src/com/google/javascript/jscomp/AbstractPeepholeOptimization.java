@@ -155,7 +155,8 @@ abstract class AbstractPeepholeOptimization {
     done: {
       if (n != null && !n.isScript()
           && (!n.isBlock() || !n.isSyntheticBlock())) {
-        for (Node parent : n.getAncestors()) {
+        for (Node parent = n.getParent(); parent != null;
+             parent = parent.getParent()) {
           if (parent.isScript()) {
             break done;
           }
@@ -106,6 +106,40 @@ class AstParallelizer {
         shouldSplit, shouldTraverse, placeHolders, root, globalPass);
   }
 
+  /**
+   * Like {@link #createNewFunctionLevelAstParallelizer}, but the place holders
+   * are written so that a pass run over the remaining tree can not make
+   * assumptions about the body of a detached function: they reference
+   * {@code this} and are not empty.
+   */
+  public static AstParallelizer createNewOpaqueFunctionLevelAstParallelizer(
+      Node root) {
+    Predicate<Node> shouldSplit = new Predicate<Node>() {
+      @Override
+      public boolean apply(Node input) {
+        return input.isFunction();
+      }
+    };
+
+    Predicate<Node> shouldTraverse = new Predicate<Node>() {
+      @Override
+      public boolean apply(Node ignored) {
+        return true;
+      }
+    };
+
+    // A function declaration of the same name, returning "this".
+    Supplier<Node> placeHolders = new Supplier<Node>() {
+      @Override
+      public Node get() {
+        return IR.function(IR.name(TEMP_NAME), IR.paramList(),
+            IR.block(IR.returnNode(IR.thisNode())));
+      }
+    };
+    return new AstParallelizer(
+        shouldSplit, shouldTraverse, placeHolders, root, true);
+  }
+
   public static AstParallelizer createNewFileLevelAstParallelizer(Node root) {
 
     // Split at every node that has a file name prop.
@@ -180,6 +214,19 @@ class AstParallelizer {
     }
   }
 
+  /**
+   * Gets the place holders that stand in for the detached subtrees until
+   * {@link #join()}, in the same order as the subtrees returned by
+   * {@link #split()}. The root is never detached, so it has no place holder.
+   */
+  public List<Node> getPlaceHolders() {
+    List<Node> placeHolders = Lists.newArrayList();
+    for (DetachPoint entry : detachPointList) {
+      placeHolders.add(entry.placeHolder);
+    }
+    return placeHolders;
+  }
+
   /**
    * Reverse the splitting done by {@link #split()}.
    */
@@ -219,8 +266,12 @@ class AstParallelizer {
     public void reattach() {
       // If the place-holder no longer has a parent, this implies the function
       // has been removed from the AST.
-      if (placeHolder.getParent() != null) {
-        if (before == null) {
+      Node parent = placeHolder.getParent();
+      if (parent != null) {
+        if (!isStillAfterBefore(parent)) {
+          // A pass moved the place holder, so "before" is stale.
+          parent.replaceChild(placeHolder, original);
+        } else if (before == null) {
           placeHolder.getParent().addChildrenToFront(original);
           placeHolder.getParent().removeChildAfter(original);
         } else {
@@ -229,5 +280,12 @@ class AstParallelizer {
         }
       }
     }
+
+    private boolean isStillAfterBefore(Node parent) {
+      if (before == null) {
+        return parent.getFirstChild() == placeHolder;
+      }
+      return before.getParent() == parent && before.getNext() == placeHolder;
+    }
   }
 }
@@ -15,9 +15,11 @@
  */
 package com.google.javascript.jscomp;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.javascript.jscomp.DiagnosticType;
-import com.google.javascript.jscomp.NodeTraversal.AbstractPostOrderCallback;
+import com.google.javascript.jscomp.NodeTraversal.AbstractSubtreeTypePruningCallback;
 import com.google.javascript.rhino.Node;
+import com.google.javascript.rhino.Token;
 
 /**
  * {@link CheckDebuggerStatement} checks for the presence of the "debugger"
@@ -27,7 +29,7 @@ import com.google.javascript.rhino.Node;
  *
  * @author bolinfest@google.com (Michael Bolin)
  */
-class CheckDebuggerStatement extends AbstractPostOrderCallback
+class CheckDebuggerStatement extends AbstractSubtreeTypePruningCallback
     implements CompilerPass {
 
   static final DiagnosticType DEBUGGER_STATEMENT_PRESENT =
@@ -38,6 +40,7 @@ class CheckDebuggerStatement extends AbstractPostOrderCallback
   private final AbstractCompiler compiler;
 
   public CheckDebuggerStatement(AbstractCompiler compiler) {
+    super(ImmutableSet.of(Token.DEBUGGER));
     this.compiler = compiler;
   }
 
@@ -18,6 +18,7 @@ package com.google.javascript.jscomp;
 import com.google.common.collect.Maps;
 import com.google.javascript.jscomp.CheckLevel;
 import com.google.javascript.jscomp.NodeTraversal.AbstractShallowCallback;
+import com.google.javascript.jscomp.NodeTraversal.Callback;
 import com.google.javascript.rhino.JSDocInfo;
 import com.google.javascript.rhino.JSDocInfo.Visibility;
 import com.google.javascript.rhino.Node;
@@ -51,9 +52,12 @@ class CheckProvides implements HotSwapCompilerPass {
 
   @Override
   public void hotSwapScript(Node scriptRoot, Node originalRoot) {
-    CheckProvidesCallback callback =
-        new CheckProvidesCallback(codingConvention);
-    new NodeTraversal(compiler, callback).traverse(scriptRoot);
+    new NodeTraversal(compiler, createCallback()).traverse(scriptRoot);
+  }
+
+  /** Creates the callback of a traversal that does the check. */
+  Callback createCallback() {
+    return new CheckProvidesCallback(codingConvention);
   }
 
   private class CheckProvidesCallback extends AbstractShallowCallback {
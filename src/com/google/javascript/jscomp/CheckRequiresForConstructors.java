@@ -62,6 +62,11 @@ class CheckRequiresForConstructors implements HotSwapCompilerPass {
     new NodeTraversal(compiler, callback).traverseRoots(externs, root);
   }
 
+  /** Creates the callback of a traversal that does the check. */
+  Callback createCallback() {
+    return new CheckRequiresForConstructorsCallback();
+  }
+
   @Override
   public void hotSwapScript(Node scriptRoot, Node originalRoot) {
     Callback callback = new CheckRequiresForConstructorsCallback();
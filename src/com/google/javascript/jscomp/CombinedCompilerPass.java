@@ -17,11 +17,13 @@
 package com.google.javascript.jscomp;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.javascript.jscomp.NodeTraversal.Callback;
 import com.google.javascript.jscomp.NodeTraversal.ScopedCallback;
 import com.google.javascript.rhino.Node;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * <p>A compiler pass combining multiple {@link Callback}
@@ -63,10 +65,21 @@ final class CombinedCompilerPass implements HotSwapCompilerPass,
 
   CombinedCompilerPass(
       AbstractCompiler compiler, List<Callback> callbacks) {
+    this(compiler, callbacks, null);
+  }
+
+  /**
+   * Creates a combined compiler pass whose callbacks have names, under which
+   * {@link #getCallbackRuntimes()} reports the time spent in them.
+   * @param names the names of the callbacks, or null
+   */
+  CombinedCompilerPass(AbstractCompiler compiler, List<Callback> callbacks,
+      List<String> names) {
     this.compiler = compiler;
     this.callbacks = new CallbackWrapper[callbacks.size()];
     for (int i = 0; i < callbacks.size(); i++) {
-      this.callbacks[i] = new CallbackWrapper(callbacks.get(i));
+      this.callbacks[i] = new CallbackWrapper(callbacks.get(i),
+          names == null ? null : names.get(i));
     }
   }
 
@@ -105,8 +118,18 @@ final class CombinedCompilerPass implements HotSwapCompilerPass,
      */
     private Node waiting = null;
 
-    private CallbackWrapper(Callback callback) {
+    /** The name of the callback, or null. */
+    private final String name;
+
+    /** Whether the time spent in the callback is measured. */
+    private boolean timed = false;
+
+    /** The time spent in the callback, in nanoseconds, if it is measured. */
+    private long runtime = 0;
+
+    private CallbackWrapper(Callback callback, String name) {
       this.callback = callback;
+      this.name = name;
       if (callback instanceof ScopedCallback) {
         scopedCallback = (ScopedCallback) callback;
       } else {
@@ -120,27 +143,45 @@ final class CombinedCompilerPass implements HotSwapCompilerPass,
      */
     void visitOrMaybeActivate(NodeTraversal t, Node n, Node parent) {
       if (isActive()) {
+        long start = timed ? System.nanoTime() : 0;
         callback.visit(t, n, parent);
+        if (timed) {
+          runtime += System.nanoTime() - start;
+        }
       } else if (waiting == n) {
         waiting = null;
       }
     }
 
     void shouldTraverseIfActive(NodeTraversal t, Node n, Node parent) {
-      if (isActive() && !callback.shouldTraverse(t, n, parent)) {
-        waiting = n;
+      if (isActive()) {
+        long start = timed ? System.nanoTime() : 0;
+        if (!callback.shouldTraverse(t, n, parent)) {
+          waiting = n;
+        }
+        if (timed) {
+          runtime += System.nanoTime() - start;
+        }
       }
     }
 
     void enterScopeIfActive(NodeTraversal t) {
       if (isActive() && scopedCallback != null) {
+        long start = timed ? System.nanoTime() : 0;
         scopedCallback.enterScope(t);
+        if (timed) {
+          runtime += System.nanoTime() - start;
+        }
       }
     }
 
     void exitScopeIfActive(NodeTraversal t) {
       if (isActive() && scopedCallback != null) {
+        long start = timed ? System.nanoTime() : 0;
         scopedCallback.exitScope(t);
+        if (timed) {
+          runtime += System.nanoTime() - start;
+        }
       }
     }
 
@@ -149,6 +190,30 @@ final class CombinedCompilerPass implements HotSwapCompilerPass,
     }
   }
 
+  /**
+   * Measures the time spent in each callback from now on. The callbacks still
+   * share one traversal, and each of them adds up the time of its own calls.
+   */
+  void setTimed(boolean timed) {
+    for (CallbackWrapper callback : callbacks) {
+      callback.timed = timed;
+    }
+  }
+
+  /**
+   * Returns the time spent in each named callback, in milliseconds, in the
+   * order of the callbacks. Only measured if {@link #setTimed} was called.
+   */
+  Map<String, Long> getCallbackRuntimes() {
+    Map<String, Long> runtimes = Maps.newLinkedHashMap();
+    for (CallbackWrapper callback : callbacks) {
+      if (callback.name != null) {
+        runtimes.put(callback.name, callback.runtime / 1000000);
+      }
+    }
+    return runtimes;
+  }
+
   @Override
   public final void process(Node externs, Node root) {
     NodeTraversal.traverse(compiler, root, this);
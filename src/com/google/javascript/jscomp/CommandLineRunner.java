@@ -379,6 +379,43 @@ public class CommandLineRunner extends
         + "annotated with @ngInject")
     private boolean angular_pass = false;
 
+    @Option(name = "--parse_threads",
+        usage = "The number of threads used to parse the inputs. "
+        + "The default of 1 parses every input on the compiler thread.")
+    private int parse_threads = 1;
+
+    @Option(name = "--print_threads",
+        usage = "The number of threads used to print the output modules. "
+        + "The default of 1 prints every module on the compiler thread.")
+    private int print_threads = 1;
+
+    @Option(name = "--ast_cache_dir",
+        usage = "A directory to cache parsed inputs in. Later runs load the "
+        + "inputs that did not change from the cache instead of parsing "
+        + "them again.")
+    private String ast_cache_dir = "";
+
+    @Option(name = "--ast_cache_max_mb",
+        usage = "The number of megabytes the --ast_cache_dir directory may "
+        + "take up. The least recently used entries are deleted to stay "
+        + "under it.")
+    private int ast_cache_max_mb = 256;
+
+    @Option(name = "--daemon",
+        handler = BooleanOptionHandler.class,
+        usage = "Keeps running after the first compile. The names of changed "
+        + "files are then read from stdin, one per line, and an empty line "
+        + "compiles again, parsing only what changed. Outputs that did not "
+        + "change are not rewritten. Requires --js_output_file or --module.")
+    private boolean daemon = false;
+
+    @Option(name = "--pass_profile",
+        usage = "A file that records how often each optimization pass "
+        + "changes code and how long it takes, across runs. The passes of "
+        + "the optimization loops are ordered by it, and it is updated "
+        + "after each run.")
+    private String pass_profile = "";
+
     @Option(name = "--output_manifest",
         usage = "Prints out a list of all the files in the compilation. "
         + "If --manage_closure_dependencies is on, this will not include "
@@ -778,6 +815,10 @@ public class CommandLineRunner extends
           .setModuleWrapper(flags.module_wrapper)
           .setModuleOutputPathPrefix(flags.module_output_path_prefix)
           .setCreateSourceMap(flags.create_source_map)
+          .setAstCacheDir(flags.ast_cache_dir)
+          .setAstCacheMaxMegabytes(flags.ast_cache_max_mb)
+          .setDaemon(flags.daemon)
+          .setPassProfile(flags.pass_profile)
           .setSourceMapFormat(flags.source_map_format)
           .setWarningGuardSpec(Flags.getWarningGuardSpec())
           .setDefine(flags.define)
@@ -835,6 +876,9 @@ public class CommandLineRunner extends
 
     options.angularPass = flags.angular_pass;
 
+    options.setParseThreads(flags.parse_threads);
+    options.setPrintThreads(flags.print_threads);
+
     if (!flags.translationsFile.isEmpty() &&
          flags.translationFormat == TranslationFormat.PO) {
       try {
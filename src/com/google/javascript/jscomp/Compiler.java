@@ -21,6 +21,8 @@ import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Supplier;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.io.CharStreams;
@@ -41,13 +43,17 @@ import com.google.javascript.rhino.IR;
 import com.google.javascript.rhino.InputId;
 import com.google.javascript.rhino.JSDocInfo;
 import com.google.javascript.rhino.Node;
+import com.google.javascript.rhino.SubtreeSummaries;
 import com.google.javascript.rhino.Token;
 import com.google.javascript.rhino.head.ErrorReporter;
 import com.google.javascript.rhino.head.ast.AstRoot;
 import com.google.javascript.rhino.jstype.JSTypeRegistry;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.io.Serializable;
 import java.util.Collections;
@@ -60,7 +66,9 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -98,6 +106,8 @@ public class Compiler extends AbstractCompiler {
 
   // Used in PerformanceTracker
   static final String PARSING_PASS_NAME = "parseInputs";
+  static final String WRITE_STATE_PASS_NAME = "writeState";
+  static final String READ_STATE_PASS_NAME = "readState";
 
   private static final String CONFIG_RESOURCE =
       "com.google.javascript.jscomp.parsing.ParserConfig";
@@ -109,6 +119,9 @@ public class Compiler extends AbstractCompiler {
   // The externs inputs
   private List<CompilerInput> externs;
 
+  // Externs parsed ahead of time, which may be shared with other compiles.
+  private ExternsSnapshot externsSnapshot = null;
+
   // The JS source modules
   private List<JSModule> modules;
 
@@ -142,12 +155,18 @@ public class Compiler extends AbstractCompiler {
   /** The externs created from the exports.  */
   private String externExports = null;
 
+  /** The optimization passes stopped early by the optimization budget. */
+  private List<String> passesCutByBudget = ImmutableList.of();
+
   /**
    * Ids for function inlining so that each declared name remains
    * unique.
    */
   private int uniqueNameId = 0;
 
+  /** The summaries of the functions and scripts of the AST. */
+  private final SubtreeSummaries subtreeSummaries = new SubtreeSummaries();
+
   /**
    * Whether to assume there are references to the RegExp Global object
    * properties.
@@ -165,6 +184,7 @@ public class Compiler extends AbstractCompiler {
 
   private JSTypeRegistry typeRegistry;
   private Config parserConfig = null;
+  private PersistentAstCache astCache = null;
 
   private ReverseAbstractInterpreter abstractInterpreter;
   private TypeValidator typeValidator;
@@ -206,6 +226,20 @@ public class Compiler extends AbstractCompiler {
     }
   });
 
+  /**
+   * Runs the tasks of {@link #runInParallel}. The threads are daemons, since
+   * a caller that is done compiling should not have to shut them down.
+   */
+  private static final ExecutorService parallelTaskExecutor =
+      Executors.newCachedThreadPool(new ThreadFactory() {
+    @Override public Thread newThread(Runnable r) {
+      Thread thread = new Thread(
+          null, r, "jscompiler-worker", COMPILER_STACK_SIZE);
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
   /**
    * Use a dedicated compiler thread per Compiler instance.
    */
@@ -397,7 +431,7 @@ public class Compiler extends AbstractCompiler {
     checkFirstModule(modules);
     fillEmptyModules(modules);
 
-    this.externs = makeCompilerInput(externs, true);
+    this.externs = makeExternInputs(externs);
 
     // Generate the module graph, and report any errors in the module
     // specification as errors.
@@ -442,6 +476,36 @@ public class Compiler extends AbstractCompiler {
     return inputs;
   }
 
+  /**
+   * Creates the inputs for the externs, taking the ASTs of the externs
+   * in the externs snapshot from the snapshot instead of parsing them.
+   */
+  private <T extends SourceFile> List<CompilerInput> makeExternInputs(
+      List<T> files) {
+    if (externsSnapshot == null
+        || !externsSnapshot.isCompatibleWith(options)) {
+      return makeCompilerInput(files, true);
+    }
+
+    List<CompilerInput> inputs = Lists.newArrayList();
+    for (T file : files) {
+      SourceAst ast = externsSnapshot.getAst(file);
+      inputs.add(ast != null
+          ? new CompilerInput(ast, true) : new CompilerInput(file, true));
+    }
+    return inputs;
+  }
+
+  /**
+   * Sets the externs snapshot that the next compile takes the ASTs of its
+   * externs from. Externs that are not in the snapshot are parsed as usual,
+   * and the snapshot is ignored if it was parsed with options that do not
+   * match the compile's.
+   */
+  public void setExternsSnapshot(ExternsSnapshot externsSnapshot) {
+    this.externsSnapshot = externsSnapshot;
+  }
+
   private static final DiagnosticType EMPTY_MODULE_LIST_ERROR =
       DiagnosticType.error("JSC_EMPTY_MODULE_LIST_ERROR",
           "At least one module must be provided");
@@ -981,7 +1045,8 @@ public class Compiler extends AbstractCompiler {
     return new Result(getErrors(), getWarnings(), debugLog.toString(),
         state.variableMap, state.propertyMap,
         state.anonymousFunctionNameMap, state.stringMap, functionInformationMap,
-        sourceMap, externExports, state.cssNames, state.idGeneratorMap);
+        sourceMap, externExports, state.cssNames, state.idGeneratorMap,
+        passesCutByBudget);
   }
 
   /**
@@ -1036,6 +1101,11 @@ public class Compiler extends AbstractCompiler {
     };
   }
 
+  @Override
+  SubtreeSummaries getSubtreeSummaries() {
+    return subtreeSummaries;
+  }
+
   @Override
   boolean areNodesEqualForInlining(Node n1, Node n2) {
     if (options.ambiguateProperties ||
@@ -1323,6 +1393,10 @@ public class Compiler extends AbstractCompiler {
     Tracer tracer = newTracer(PARSING_PASS_NAME);
 
     try {
+      if (options.parseThreads > 1) {
+        preparseInputs(options.parseThreads);
+      }
+
       // Parse externs sources.
       for (CompilerInput input : externs) {
         Node n = input.getAstRoot(this);
@@ -1415,6 +1489,28 @@ public class Compiler extends AbstractCompiler {
     }
   }
 
+  /**
+   * Parses the externs and inputs on a pool of worker threads. The ASTs are
+   * attached to the tree, and their errors reported, by the usual serial
+   * walk over the inputs, so the result does not depend on thread timing.
+   */
+  private void preparseInputs(int threadCount) {
+    final Config config = getParserConfig();
+    List<Runnable> tasks = Lists.newArrayList();
+    for (CompilerInput input : Iterables.concat(externs, inputs)) {
+      if (input.getSourceAst() instanceof JsAst) {
+        final JsAst ast = (JsAst) input.getSourceAst();
+        tasks.add(new Runnable() {
+          @Override
+          public void run() {
+            ast.preparse(Compiler.this, config);
+          }
+        });
+      }
+    }
+    runInParallel(tasks, threadCount);
+  }
+
   /**
    * Hoists inputs with the @externs annotation into the externs list.
    */
@@ -1652,8 +1748,27 @@ public class Compiler extends AbstractCompiler {
       public String[] call() throws Exception {
         Tracer tracer = newTracer("toSourceArray");
         try {
-          int numInputs = inputs.size();
-          String[] sources = new String[numInputs];
+          final int numInputs = inputs.size();
+          final String[] sources = new String[numInputs];
+          // The inputs share the source map, so only inputs without one
+          // can be printed independently.
+          if (options.printThreads > 1 && sourceMap == null) {
+            List<Runnable> tasks = Lists.newArrayList();
+            for (int i = 0; i < numInputs; i++) {
+              final int index = i;
+              final Node scriptNode = inputs.get(i).getAstRoot(Compiler.this);
+              tasks.add(new Runnable() {
+                @Override
+                public void run() {
+                  CodeBuilder cb = new CodeBuilder();
+                  appendSource(cb, index, scriptNode, null);
+                  sources[index] = cb.toString();
+                }
+              });
+            }
+            runInParallel(tasks, options.printThreads);
+            return sources;
+          }
           CodeBuilder cb = new CodeBuilder();
           for (int i = 0; i < numInputs; i++) {
             Node scriptNode = inputs.get(i).getAstRoot(Compiler.this);
@@ -1676,25 +1791,103 @@ public class Compiler extends AbstractCompiler {
     return runInCompilerThread(new Callable<String>() {
       @Override
       public String call() throws Exception {
-        List<CompilerInput> inputs = module.getInputs();
-        int numInputs = inputs.size();
-        if (numInputs == 0) {
-          return "";
-        }
-        CodeBuilder cb = new CodeBuilder();
-        for (int i = 0; i < numInputs; i++) {
-          Node scriptNode = inputs.get(i).getAstRoot(Compiler.this);
-          if (scriptNode == null) {
-            throw new IllegalArgumentException(
-                "Bad module: " + module.getName());
+        return toSource(module, sourceMap);
+      }
+    });
+  }
+
+  /**
+   * Converts the parse trees of several modules back to JS code, printing
+   * up to {@link CompilerOptions#setPrintThreads} modules at once. The code
+   * of each module is what {@link #toSource(JSModule)} gives. If source maps
+   * are enabled, each module gets a source map of its own, with the mappings
+   * the source map of the compiler would have after a reset and a
+   * {@link #toSource(JSModule)} of the module.
+   */
+  public List<ModuleOutput> toModuleOutputs(final List<JSModule> modules) {
+    return runInCompilerThread(new Callable<List<ModuleOutput>>() {
+      @Override
+      public List<ModuleOutput> call() throws Exception {
+        Tracer tracer = newTracer("toModuleOutputs");
+        try {
+          final ModuleOutput[] outputs = new ModuleOutput[modules.size()];
+          List<Runnable> tasks = Lists.newArrayList();
+          for (int i = 0; i < modules.size(); i++) {
+            final int index = i;
+            tasks.add(new Runnable() {
+              @Override
+              public void run() {
+                JSModule module = modules.get(index);
+                SourceMap moduleSourceMap = null;
+                if (options.sourceMapOutputPath != null) {
+                  moduleSourceMap = options.sourceMapFormat.getInstance();
+                  moduleSourceMap.setPrefixMappings(
+                      options.sourceMapLocationMappings);
+                }
+                outputs[index] = new ModuleOutput(module,
+                    toSource(module, moduleSourceMap), moduleSourceMap);
+              }
+            });
           }
-          toSource(cb, i, scriptNode);
+          if (options.printThreads > 1) {
+            runInParallel(tasks, options.printThreads);
+          } else {
+            for (Runnable task : tasks) {
+              task.run();
+            }
+          }
+          return ImmutableList.copyOf(outputs);
+        } finally {
+          stopTracer(tracer, "toModuleOutputs");
         }
-        return cb.toString();
       }
     });
   }
 
+  /** The code of a module, and the source map of that code. */
+  public static class ModuleOutput {
+    private final JSModule module;
+    private final String code;
+    private final SourceMap sourceMap;
+
+    ModuleOutput(JSModule module, String code, SourceMap sourceMap) {
+      this.module = module;
+      this.code = code;
+      this.sourceMap = sourceMap;
+    }
+
+    public JSModule getModule() {
+      return module;
+    }
+
+    public String getCode() {
+      return code;
+    }
+
+    /** Returns the source map of the code, or null if there is none. */
+    public SourceMap getSourceMap() {
+      return sourceMap;
+    }
+  }
+
+  private String toSource(JSModule module, SourceMap sourceMap) {
+    List<CompilerInput> inputs = module.getInputs();
+    int numInputs = inputs.size();
+    if (numInputs == 0) {
+      return "";
+    }
+    CodeBuilder cb = new CodeBuilder();
+    for (int i = 0; i < numInputs; i++) {
+      Node scriptNode = inputs.get(i).getAstRoot(this);
+      if (scriptNode == null) {
+        throw new IllegalArgumentException(
+            "Bad module: " + module.getName());
+      }
+      appendSource(cb, i, scriptNode, sourceMap);
+    }
+    return cb.toString();
+  }
+
 
   /**
    * Converts the parse tree for each input in a module back to JS code.
@@ -1740,64 +1933,75 @@ public class Compiler extends AbstractCompiler {
     runInCompilerThread(new Callable<Void>() {
       @Override
       public Void call() throws Exception {
-        if (options.printInputDelimiter) {
-          if ((cb.getLength() > 0) && !cb.endsWith("\n")) {
-            cb.append("\n");  // Make sure that the label starts on a new line
-          }
-          Preconditions.checkState(root.isScript());
-
-          String delimiter = options.inputDelimiter;
-
-          String inputName = root.getInputId().getIdName();
-          String sourceName = root.getSourceFileName();
-          Preconditions.checkState(sourceName != null);
-          Preconditions.checkState(!sourceName.isEmpty());
-
-          delimiter = delimiter
-              .replaceAll("%name%", Matcher.quoteReplacement(inputName))
-              .replaceAll("%num%", String.valueOf(inputSeqNum));
-
-          cb.append(delimiter)
-            .append("\n");
-        }
-        if (root.getJSDocInfo() != null &&
-            root.getJSDocInfo().getLicense() != null) {
-          cb.append("/*\n")
-            .append(root.getJSDocInfo().getLicense())
-            .append("*/\n");
-        }
-
-        // If there is a valid source map, then indicate to it that the current
-        // root node's mappings are offset by the given string builder buffer.
-        if (options.sourceMapOutputPath != null) {
-          sourceMap.setStartingPosition(
-              cb.getLineIndex(), cb.getColumnIndex());
-        }
-
-        // if LanguageMode is ECMASCRIPT5_STRICT, only print 'use strict'
-        // for the first input file
-        String code = toSource(root, sourceMap, inputSeqNum == 0);
-        if (!code.isEmpty()) {
-          cb.append(code);
-
-          // In order to avoid parse ambiguity when files are concatenated
-          // together, all files should end in a semi-colon. Do a quick
-          // heuristic check if there's an obvious semi-colon already there.
-          int length = code.length();
-          char lastChar = code.charAt(length - 1);
-          char secondLastChar = length >= 2 ?
-              code.charAt(length - 2) : '\0';
-          boolean hasSemiColon = lastChar == ';' ||
-              (lastChar == '\n' && secondLastChar == ';');
-          if (!hasSemiColon) {
-            cb.append(";");
-          }
-        }
+        appendSource(cb, inputSeqNum, root, sourceMap);
         return null;
       }
     });
   }
 
+  /**
+   * Writes out JS code from a root node, like
+   * {@link #toSource(CodeBuilder, int, Node)}, with the mappings going to
+   * the given source map. It does not change the compiler, so it may run on
+   * any thread.
+   */
+  private void appendSource(
+      CodeBuilder cb, int inputSeqNum, Node root, SourceMap sourceMap) {
+    if (options.printInputDelimiter) {
+      if ((cb.getLength() > 0) && !cb.endsWith("\n")) {
+        cb.append("\n");  // Make sure that the label starts on a new line
+      }
+      Preconditions.checkState(root.isScript());
+
+      String delimiter = options.inputDelimiter;
+
+      String inputName = root.getInputId().getIdName();
+      String sourceName = root.getSourceFileName();
+      Preconditions.checkState(sourceName != null);
+      Preconditions.checkState(!sourceName.isEmpty());
+
+      delimiter = delimiter
+          .replaceAll("%name%", Matcher.quoteReplacement(inputName))
+          .replaceAll("%num%", String.valueOf(inputSeqNum));
+
+      cb.append(delimiter)
+        .append("\n");
+    }
+    if (root.getJSDocInfo() != null &&
+        root.getJSDocInfo().getLicense() != null) {
+      cb.append("/*\n")
+        .append(root.getJSDocInfo().getLicense())
+        .append("*/\n");
+    }
+
+    // If there is a valid source map, then indicate to it that the current
+    // root node's mappings are offset by the given string builder buffer.
+    if (sourceMap != null) {
+      sourceMap.setStartingPosition(
+          cb.getLineIndex(), cb.getColumnIndex());
+    }
+
+    // if LanguageMode is ECMASCRIPT5_STRICT, only print 'use strict'
+    // for the first input file
+    String code = toSource(root, sourceMap, inputSeqNum == 0);
+    if (!code.isEmpty()) {
+      cb.append(code);
+
+      // In order to avoid parse ambiguity when files are concatenated
+      // together, all files should end in a semi-colon. Do a quick
+      // heuristic check if there's an obvious semi-colon already there.
+      int length = code.length();
+      char lastChar = code.charAt(length - 1);
+      char secondLastChar = length >= 2 ?
+          code.charAt(length - 2) : '\0';
+      boolean hasSemiColon = lastChar == ';' ||
+          (lastChar == '\n' && secondLastChar == ';');
+      if (!hasSemiColon) {
+        cb.append(";");
+      }
+    }
+  }
+
   /**
    * Generates JavaScript source code for an AST, doesn't generate source
    * map info.
@@ -1889,6 +2093,7 @@ public class Compiler extends AbstractCompiler {
   //------------------------------------------------------------------------
 
   public void optimize() {
+    long start = System.nanoTime();
     // Ideally, this pass should be the first pass run, however:
     // 1) VariableReferenceCheck reports unexpected warnings if Normalize
     // is done first.
@@ -1903,8 +2108,26 @@ public class Compiler extends AbstractCompiler {
     if (options.getCheckDeterminism()) {
       phaseOptimizer.setPrintAstHashcodes(true);
     }
+    phaseOptimizer.setFunctionLevelPassThreads(
+        options.functionLevelPassThreads);
+    phaseOptimizer.setSkipUnchangedFunctions(
+        options.skipUnchangedFunctionsInLoops);
+    if (options.optimizationTimeBudgetMs > 0) {
+      phaseOptimizer.setLoopDeadline(
+          start + options.optimizationTimeBudgetMs * 1000000);
+    }
+    phaseOptimizer.setLoopHeapLimit(options.optimizationHeapBudgetBytes);
+    PassProfile passProfile = null;
+    if (options.passProfileFile != null) {
+      passProfile = PassProfile.load(new File(options.passProfileFile));
+      phaseOptimizer.setPassProfile(passProfile);
+    }
     phaseOptimizer.consume(getPassConfig().getOptimizations());
     phaseOptimizer.process(externsRoot, jsRoot);
+    passesCutByBudget = phaseOptimizer.getPassesCutByBudget();
+    if (passProfile != null && !hasHaltingErrors()) {
+      passProfile.save(new File(options.passProfileFile));
+    }
   }
 
   @Override
@@ -1980,12 +2203,22 @@ public class Compiler extends AbstractCompiler {
 
   @Override
   void addChangeHandler(CodeChangeHandler handler) {
-    codeChangeHandlers.add(handler);
+    ParallelTaskReport task = parallelTaskReport.get();
+    if (task != null) {
+      task.changeHandlers.add(handler);
+    } else {
+      codeChangeHandlers.add(handler);
+    }
   }
 
   @Override
   void removeChangeHandler(CodeChangeHandler handler) {
-    codeChangeHandlers.remove(handler);
+    ParallelTaskReport task = parallelTaskReport.get();
+    if (task != null) {
+      task.changeHandlers.remove(handler);
+    } else {
+      codeChangeHandlers.remove(handler);
+    }
   }
 
   /**
@@ -1995,11 +2228,88 @@ public class Compiler extends AbstractCompiler {
    */
   @Override
   public void reportCodeChange() {
+    ParallelTaskReport task = parallelTaskReport.get();
+    if (task != null) {
+      task.changed = true;
+      for (CodeChangeHandler handler : task.changeHandlers) {
+        handler.reportChange();
+      }
+      return;
+    }
+
     for (CodeChangeHandler handler : codeChangeHandlers) {
       handler.reportChange();
     }
   }
 
+  /**
+   * What a task of {@link #runInParallel} has reported so far. It is only
+   * visible to the thread running the task.
+   */
+  private static class ParallelTaskReport {
+    final List<CodeChangeHandler> changeHandlers = Lists.newArrayList();
+    final List<JSError> errors = Lists.newArrayList();
+    boolean changed = false;
+  }
+
+  private final ThreadLocal<ParallelTaskReport> parallelTaskReport =
+      new ThreadLocal<ParallelTaskReport>();
+
+  @Override
+  void runInParallel(
+      final List<? extends Runnable> tasks, int threadCount) {
+    final ParallelTaskReport[] reports = new ParallelTaskReport[tasks.size()];
+    final AtomicInteger nextTask = new AtomicInteger();
+    Callable<Void> worker = new Callable<Void>() {
+      @Override
+      public Void call() {
+        for (int i = nextTask.getAndIncrement(); i < tasks.size();
+             i = nextTask.getAndIncrement()) {
+          reports[i] = new ParallelTaskReport();
+          parallelTaskReport.set(reports[i]);
+          try {
+            tasks.get(i).run();
+          } finally {
+            parallelTaskReport.remove();
+          }
+        }
+        return null;
+      }
+    };
+
+    List<Future<Void>> workers = Lists.newArrayList();
+    for (int i = 0; i < Math.min(threadCount, tasks.size()); i++) {
+      workers.add(parallelTaskExecutor.submit(worker));
+    }
+
+    // Wait for every worker, even after a failure, so that no task is still
+    // changing the AST when this returns.
+    Throwable failure = null;
+    for (Future<Void> result : workers) {
+      try {
+        result.get();
+      } catch (InterruptedException e) {
+        failure = (failure == null) ? e : failure;
+      } catch (ExecutionException e) {
+        failure = (failure == null) ? e.getCause() : failure;
+      }
+    }
+    if (failure != null) {
+      throw Throwables.propagate(failure);
+    }
+
+    boolean changed = false;
+    for (ParallelTaskReport report : reports) {
+      for (JSError error : report.errors) {
+        report(error);
+      }
+      changed |= report.changed;
+    }
+    if (changed) {
+      reportCodeChange();
+    }
+  }
+
   @Override
   public CodingConvention getCodingConvention() {
     CodingConvention convention = options.getCodingConvention();
@@ -2060,6 +2370,15 @@ public class Compiler extends AbstractCompiler {
     return parserConfig;
   }
 
+  @Override
+  synchronized PersistentAstCache getAstCache() {
+    if (astCache == null && options.astCacheDirectory != null) {
+      astCache = new PersistentAstCache(
+          new File(options.astCacheDirectory), options.astCacheMaxBytes);
+    }
+    return astCache;
+  }
+
   @Override
   public boolean isTypeCheckingEnabled() {
     return options.checkTypes;
@@ -2080,6 +2399,12 @@ public class Compiler extends AbstractCompiler {
 
   @Override
   public void report(JSError error) {
+    ParallelTaskReport task = parallelTaskReport.get();
+    if (task != null) {
+      task.errors.add(error);
+      return;
+    }
+
     CheckLevel level = error.getDefaultLevel();
     if (warningsGuard != null) {
       CheckLevel newLevel = warningsGuard.level(error);
@@ -2297,16 +2622,16 @@ public class Compiler extends AbstractCompiler {
     private static final long serialVersionUID = 1L;
 
     Node externsRoot;
-    private Node jsRoot;
-    private List<CompilerInput> externs;
-    private List<CompilerInput> inputs;
-    private List<JSModule> modules;
-    private PassConfig.State passConfigState;
-    private JSTypeRegistry typeRegistry;
-    private AbstractCompiler.LifeCycleStage lifeCycleStage;
-    private Map<String, Node> injectedLibraries;
+    Node jsRoot;
+    List<CompilerInput> externs;
+    List<CompilerInput> inputs;
+    List<JSModule> modules;
+    PassConfig.State passConfigState;
+    JSTypeRegistry typeRegistry;
+    AbstractCompiler.LifeCycleStage lifeCycleStage;
+    Map<String, Node> injectedLibraries;
 
-    private IntermediateState() {}
+    IntermediateState() {}
   }
 
   /**
@@ -2334,6 +2659,7 @@ public class Compiler extends AbstractCompiler {
   public void setState(IntermediateState state) {
     externsRoot = state.externsRoot;
     jsRoot = state.jsRoot;
+    externAndJsRoot = jsRoot.getParent();
     externs = state.externs;
     inputs = state.inputs;
     modules = state.modules;
@@ -2346,6 +2672,43 @@ public class Compiler extends AbstractCompiler {
     injectedLibraries.putAll(state.injectedLibraries);
   }
 
+  /**
+   * Writes the current internal state, as returned by {@link #getState}, in
+   * a compact binary format. The time it takes is reported to the
+   * performance tracker.
+   */
+  public void writeState(OutputStream out) throws IOException {
+    Tracer tracer = newTracer(WRITE_STATE_PASS_NAME);
+    try {
+      IntermediateStateSerializer.write(getState(), out);
+    } finally {
+      stopTracer(tracer, WRITE_STATE_PASS_NAME);
+    }
+  }
+
+  /**
+   * Sets the internal state to one written by {@link #writeState}, with the
+   * same assumptions as {@link #setState}. The time it takes is reported to
+   * the performance tracker.
+   */
+  public void readState(InputStream in) throws IOException {
+    if (options.tracer.isOn() && tracker == null) {
+      // The tracker is normally created when parsing, which a compiler
+      // that starts from a saved state does not do.
+      tracker = new PerformanceTracker(jsRoot, options.tracer);
+      addChangeHandler(tracker.getCodeChangeHandler());
+    }
+    Tracer tracer = newTracer(READ_STATE_PASS_NAME);
+    try {
+      setState(IntermediateStateSerializer.read(in));
+      if (tracker != null) {
+        tracker.setJsRoot(jsRoot);
+      }
+    } finally {
+      stopTracer(tracer, READ_STATE_PASS_NAME);
+    }
+  }
+
   @VisibleForTesting
   List<CompilerInput> getInputsForTesting() {
     return inputs;
@@ -123,12 +123,97 @@ public class CompilerOptions implements Serializable, Cloneable {
    */
   private boolean checkDeterminism;
 
+  /**
+   * The number of threads used to run function-local optimization passes,
+   * such as the peephole optimizations, over the top level functions. With
+   * fewer than two, those passes run over the whole AST on the compiler
+   * thread.
+   */
+  int functionLevelPassThreads = 1;
+
+  public void setFunctionLevelPassThreads(int functionLevelPassThreads) {
+    this.functionLevelPassThreads = functionLevelPassThreads;
+  }
+
+  /**
+   * Whether function-local optimization passes that run in a fixed point
+   * loop, such as the peephole optimizations, skip the top level functions
+   * that have not changed since they last ran over them. Changes of props
+   * alone are not seen, so this is only safe when the passes of the loops do
+   * not read props that other passes of the loops set.
+   */
+  boolean skipUnchangedFunctionsInLoops = false;
+
+  public void setSkipUnchangedFunctionsInLoops(boolean skip) {
+    this.skipUnchangedFunctionsInLoops = skip;
+  }
+
   //--------------------------------
   // Input Options
   //--------------------------------
 
   DependencyOptions dependencyOptions = new DependencyOptions();
 
+  /**
+   * The number of threads used to parse the inputs. With fewer than two,
+   * every input is parsed on the compiler thread.
+   */
+  int parseThreads = 1;
+
+  public void setParseThreads(int parseThreads) {
+    this.parseThreads = parseThreads;
+  }
+
+  /**
+   * A directory to keep parsed ASTs in, so that later compiles of the same
+   * code can skip parsing it. Null if parsed ASTs are not cached.
+   */
+  String astCacheDirectory = null;
+
+  /** The number of bytes the cached ASTs may take up. */
+  long astCacheMaxBytes = 256L * 1024 * 1024;
+
+  public void setAstCacheDirectory(String astCacheDirectory) {
+    this.astCacheDirectory = astCacheDirectory;
+  }
+
+  public void setAstCacheMaxBytes(long astCacheMaxBytes) {
+    this.astCacheMaxBytes = astCacheMaxBytes;
+  }
+
+  /**
+   * A file that records how often the passes of the optimization loops
+   * change code and how long they take, over all compiles that use it. The
+   * passes of each loop are ordered by it. Null if no profile is kept.
+   */
+  String passProfileFile = null;
+
+  public void setPassProfileFile(String passProfileFile) {
+    this.passProfileFile = passProfileFile;
+  }
+
+  /**
+   * The number of milliseconds the optimizations may take before their fixed
+   * point loops stop early, or 0 for no limit. A loop stops after the pass
+   * that is running, and the output is still valid, but may be larger.
+   */
+  long optimizationTimeBudgetMs = 0;
+
+  /**
+   * The number of bytes of heap in use above which the fixed point loops of
+   * the optimizations stop early, or 0 for no limit.
+   */
+  long optimizationHeapBudgetBytes = 0;
+
+  public void setOptimizationTimeBudgetMs(long optimizationTimeBudgetMs) {
+    this.optimizationTimeBudgetMs = optimizationTimeBudgetMs;
+  }
+
+  public void setOptimizationHeapBudgetBytes(
+      long optimizationHeapBudgetBytes) {
+    this.optimizationHeapBudgetBytes = optimizationHeapBudgetBytes;
+  }
+
   /** Returns localized replacement for MSG_* variables */
   // Transient so that clients don't have to implement Serializable.
   public transient MessageBundle messageBundle = null;
@@ -717,6 +802,17 @@ public class CompilerOptions implements Serializable, Cloneable {
   /** The string to use as the separator for printInputDelimiter */
   public String inputDelimiter = "// Input %num%";
 
+  /**
+   * The number of threads used to print the code of several modules or
+   * inputs at once. With fewer than two, they are printed one at a time on
+   * the compiler thread.
+   */
+  int printThreads = 1;
+
+  public void setPrintThreads(int printThreads) {
+    this.printThreads = printThreads;
+  }
+
   boolean preferSingleQuotes;
 
   /**
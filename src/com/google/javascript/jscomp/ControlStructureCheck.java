@@ -16,6 +16,7 @@
 
 package com.google.javascript.jscomp;
 
+import com.google.javascript.jscomp.NodeTraversal.AbstractPostOrderCallback;
 import com.google.javascript.rhino.JSDocInfo;
 import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.Token;
@@ -24,7 +25,8 @@ import com.google.javascript.rhino.Token;
  * Check for usage of 'with'.
  *
  */
-class ControlStructureCheck implements HotSwapCompilerPass {
+class ControlStructureCheck extends AbstractPostOrderCallback
+    implements HotSwapCompilerPass {
 
   private final AbstractCompiler compiler;
 
@@ -38,20 +40,19 @@ class ControlStructureCheck implements HotSwapCompilerPass {
 
   @Override
   public void process(Node externs, Node root) {
-    check(root);
+    NodeTraversal.traverse(compiler, root, this);
   }
 
   @Override
   public void hotSwapScript(Node scriptRoot, Node originalRoot) {
-    check(scriptRoot);
+    NodeTraversal.traverse(compiler, scriptRoot, this);
   }
 
   /**
    * Reports errors for any invalid use of control structures.
-   *
-   * @param node Current node to check.
    */
-  private void check(Node node) {
+  @Override
+  public void visit(NodeTraversal t, Node node, Node parent) {
     switch (node.getType()) {
       case Token.WITH:
         JSDocInfo info = node.getJSDocInfo();
@@ -62,12 +63,6 @@ class ControlStructureCheck implements HotSwapCompilerPass {
         }
         break;
     }
-
-    for (Node bChild = node.getFirstChild(); bChild != null;) {
-      Node next = bChild.getNext();
-      check(bChild);
-      bChild = next;
-    }
   }
 
   private void report(Node n, DiagnosticType error) {
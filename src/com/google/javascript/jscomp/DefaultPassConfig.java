@@ -757,17 +757,32 @@ public class DefaultPassConfig extends PassConfig {
    * Checks for code that is probably wrong (such as stray expressions).
    */
   final HotSwapPassFactory checkSideEffects =
-      new HotSwapPassFactory("checkSideEffects", true) {
+      new TraversalCheckFactory("checkSideEffects") {
     @Override
     protected HotSwapCompilerPass create(final AbstractCompiler compiler) {
+      return new CheckSideEffects(compiler,
+          options.checkSuspiciousCode ? CheckLevel.WARNING : CheckLevel.OFF,
+              protectHiddenSideEffects());
+    }
+
+    @Override
+    Callback createCallback(AbstractCompiler compiler) {
+      return new CheckSideEffects(compiler,
+          options.checkSuspiciousCode ? CheckLevel.WARNING : CheckLevel.OFF,
+              false);
+    }
+
+    @Override
+    boolean canShareTraversal() {
+      // Protecting side effects changes the AST after the traversal.
+      return !protectHiddenSideEffects();
+    }
+
+    private boolean protectHiddenSideEffects() {
       // The current approach to protecting "hidden" side-effects is to
       // wrap them in a function call that is stripped later, this shouldn't
       // be done in IDE mode where AST changes may be unexpected.
-      boolean protectHiddenSideEffects =
-          options.protectHiddenSideEffects && !options.ideMode;
-      return new CheckSideEffects(compiler,
-          options.checkSuspiciousCode ? CheckLevel.WARNING : CheckLevel.OFF,
-              protectHiddenSideEffects);
+      return options.protectHiddenSideEffects && !options.ideMode;
     }
   };
 
@@ -787,9 +802,9 @@ public class DefaultPassConfig extends PassConfig {
    * Checks for code that is probably wrong (such as stray expressions).
    */
   final HotSwapPassFactory suspiciousCode =
-      new HotSwapPassFactory("suspiciousCode", true) {
+      new TraversalCheckFactory("suspiciousCode") {
     @Override
-    protected HotSwapCompilerPass create(final AbstractCompiler compiler) {
+    Callback createCallback(final AbstractCompiler compiler) {
       List<Callback> sharedCallbacks = Lists.newArrayList();
       if (options.checkSuspiciousCode) {
         sharedCallbacks.add(new CheckSuspiciousCode());
@@ -803,7 +818,7 @@ public class DefaultPassConfig extends PassConfig {
         sharedCallbacks.add(new CheckDebuggerStatement(compiler));
       }
 
-      return combineChecks(compiler, sharedCallbacks);
+      return new CombinedCompilerPass(compiler, sharedCallbacks);
     }
 
   };
@@ -824,28 +839,35 @@ public class DefaultPassConfig extends PassConfig {
 
   /** Checks for validity of the control structures. */
   final HotSwapPassFactory checkControlStructures =
-      new HotSwapPassFactory("checkControlStructures", true) {
+      new TraversalCheckFactory("checkControlStructures") {
     @Override
-    protected HotSwapCompilerPass create(AbstractCompiler compiler) {
+    Callback createCallback(AbstractCompiler compiler) {
       return new ControlStructureCheck(compiler);
     }
   };
 
   /** Checks that all constructed classes are goog.require()d. */
   final HotSwapPassFactory checkRequires =
-      new HotSwapPassFactory("checkRequires", true) {
+      new TraversalCheckFactory("checkRequires") {
     @Override
     protected HotSwapCompilerPass create(AbstractCompiler compiler) {
       return new CheckRequiresForConstructors(compiler, options.checkRequires);
     }
+
+    @Override
+    Callback createCallback(AbstractCompiler compiler) {
+      return new CheckRequiresForConstructors(compiler, options.checkRequires)
+          .createCallback();
+    }
   };
 
   /** Makes sure @constructor is paired with goog.provides(). */
   final HotSwapPassFactory checkProvides =
-      new HotSwapPassFactory("checkProvides", true) {
+      new TraversalCheckFactory("checkProvides") {
     @Override
-    protected HotSwapCompilerPass create(AbstractCompiler compiler) {
-      return new CheckProvides(compiler, options.checkProvides);
+    Callback createCallback(AbstractCompiler compiler) {
+      return new CheckProvides(compiler, options.checkProvides)
+          .createCallback();
     }
   };
 
@@ -1072,6 +1094,11 @@ public class DefaultPassConfig extends PassConfig {
             new PeepholeFoldConstants(late),
             new PeepholeCollectPropertyAssignments());
     }
+
+    @Override
+    boolean isFunctionLocal() {
+      return true;
+    }
   };
 
   /** Same as peepholeOptimizations but aggressively merges code together */
@@ -1088,6 +1115,11 @@ public class DefaultPassConfig extends PassConfig {
             new PeepholeFoldConstants(late),
             new ReorderConstantExpression());
     }
+
+    @Override
+    boolean isFunctionLocal() {
+      return true;
+    }
   };
 
   /** Checks that all variables are defined. */
@@ -1655,6 +1687,11 @@ public class DefaultPassConfig extends PassConfig {
     protected CompilerPass create(AbstractCompiler compiler) {
       return new MinimizeExitPoints(compiler);
     }
+
+    @Override
+    boolean isFunctionLocal() {
+      return true;
+    }
   };
 
   /**
@@ -1757,6 +1794,11 @@ public class DefaultPassConfig extends PassConfig {
     protected CompilerPass create(AbstractCompiler compiler) {
       return new DeadAssignmentsElimination(compiler);
     }
+
+    @Override
+    boolean isFunctionLocal() {
+      return true;
+    }
   };
 
   /** Inlines function calls. */
@@ -1857,6 +1899,11 @@ public class DefaultPassConfig extends PassConfig {
     protected CompilerPass create(AbstractCompiler compiler) {
       return new CoalesceVariableNames(compiler, options.generatePseudoNames);
     }
+
+    @Override
+    boolean isFunctionLocal() {
+      return true;
+    }
   };
 
   /**
@@ -2330,4 +2377,81 @@ public class DefaultPassConfig extends PassConfig {
     }
   }
 
+  /**
+   * A factory for a one-time check that is a single traversal of the main
+   * code, or of the script being hot-swapped, with a callback that does not
+   * change the AST. Adjacent such checks share one traversal.
+   */
+  abstract static class TraversalCheckFactory extends HotSwapPassFactory {
+
+    TraversalCheckFactory(String name) {
+      super(name, true);
+    }
+
+    /** Creates the callback of a run of the check. */
+    abstract Callback createCallback(AbstractCompiler compiler);
+
+    /**
+     * Whether the check is only its traversal, and so can share it. Checks
+     * that do more in some compiles override {@link #create} too.
+     */
+    boolean canShareTraversal() {
+      return true;
+    }
+
+    @Override
+    protected HotSwapCompilerPass create(final AbstractCompiler compiler) {
+      final Callback callback = createCallback(compiler);
+      return new HotSwapCompilerPass() {
+        @Override
+        public void process(Node externs, Node root) {
+          NodeTraversal.traverse(compiler, root, callback);
+        }
+
+        @Override
+        public void hotSwapScript(Node scriptRoot, Node originalRoot) {
+          NodeTraversal.traverse(compiler, scriptRoot, callback);
+        }
+      };
+    }
+  }
+
+  /**
+   * Runs several checks in one traversal, with a {@link CombinedCompilerPass}.
+   * The pass is named after all of the checks, and the
+   * {@link PerformanceTracker} sees the time of each check on its own.
+   * {@link PhaseOptimizer} builds these from the checks it is given, so that
+   * the list of checks keeps the name of each check.
+   */
+  static class FusedChecksFactory extends HotSwapPassFactory {
+    private final List<TraversalCheckFactory> checks;
+
+    FusedChecksFactory(List<TraversalCheckFactory> checks) {
+      super(getFusedName(checks), true);
+      this.checks = checks;
+    }
+
+    private static String getFusedName(List<TraversalCheckFactory> checks) {
+      StringBuilder sb = new StringBuilder();
+      for (TraversalCheckFactory check : checks) {
+        if (sb.length() > 0) {
+          sb.append('+');
+        }
+        sb.append(check.getName());
+      }
+      return sb.toString();
+    }
+
+    @Override
+    protected HotSwapCompilerPass create(AbstractCompiler compiler) {
+      List<Callback> callbacks = Lists.newArrayList();
+      List<String> names = Lists.newArrayList();
+      for (TraversalCheckFactory check : checks) {
+        callbacks.add(check.createCallback(compiler));
+        names.add(check.getName());
+      }
+      return new CombinedCompilerPass(compiler, callbacks, names);
+    }
+  }
+
 }
@@ -656,7 +656,8 @@ class ExpressionDecomposer {
    */
   static Node findExpressionRoot(Node subExpression) {
     Node child = subExpression;
-    for (Node parent : child.getAncestors()) {
+    for (Node parent = child.getParent(); parent != null;
+         parent = parent.getParent()) {
       int parentType = parent.getType();
       switch (parentType) {
         // Supported expression roots:
@@ -750,7 +751,8 @@ class ExpressionDecomposer {
         subExpression, compiler);
 
     Node child = subExpression;
-    for (Node parent : child.getAncestors()) {
+    for (Node parent = child.getParent(); parent != null;
+         parent = parent.getParent()) {
       if (parent == expressionRoot) {
         // Done. The walk back to the root of the expression is complete, and
         // nothing was encountered that blocks the call from being moved.
@@ -786,7 +788,7 @@ class ExpressionDecomposer {
           // in these cases the checks below are necessary.
         } else {
           // Everything else.
-          for (Node n : parent.children()) {
+          for (Node n = parent.getFirstChild(); n != null; n = n.getNext()) {
             if (n == child) {
               // None of the preceding siblings have side-effects.
               // This is OK.
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2013 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.javascript.rhino.InputId;
+import com.google.javascript.rhino.Node;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A set of externs that has been parsed once, and can be shared by any number
+ * of compiles, including ones running concurrently. Each compile that is
+ * given the snapshot (see {@link Compiler#setExternsSnapshot}) gets its own
+ * copy of the parsed externs, instead of parsing them again.
+ *
+ * The snapshot is immutable once created. The copies share the JSDoc of the
+ * snapshot, which passes treat as read-only. Types are not part of the
+ * snapshot: each compile still builds its own type registry, since types
+ * belong to the registry that created them.
+ *
+ */
+public final class ExternsSnapshot {
+
+  private final ImmutableMap<String, ParsedExtern> externs;
+
+  // The options that affect how the externs were parsed.
+  private final CompilerOptions.LanguageMode languageIn;
+  private final boolean ideMode;
+  private final boolean acceptConstKeyword;
+  private final ImmutableSet<String> extraAnnotationNames;
+
+  private ExternsSnapshot(ImmutableMap<String, ParsedExtern> externs,
+      CompilerOptions options) {
+    this.externs = externs;
+    this.languageIn = options.getLanguageIn();
+    this.ideMode = options.ideMode;
+    this.acceptConstKeyword = options.acceptConstKeyword;
+    this.extraAnnotationNames = copyOf(options.extraAnnotationNames);
+  }
+
+  /**
+   * Parses the externs with the parser settings of the given options.
+   * Diagnostics found while parsing are kept, and reported by every compile
+   * that uses the snapshot.
+   */
+  public static ExternsSnapshot create(
+      List<? extends SourceFile> externs, CompilerOptions options) {
+    ImmutableMap.Builder<String, ParsedExtern> builder =
+        ImmutableMap.builder();
+    for (SourceFile file : externs) {
+      // Each extern gets a compiler of its own, so that the diagnostics of
+      // the parse can be told apart.
+      Compiler compiler = new Compiler();
+      compiler.setErrorManager(new CollectingErrorManager());
+      compiler.init(ImmutableList.of(file), ImmutableList.<SourceFile>of(),
+          options);
+
+      InputId inputId = new InputId(file.getName());
+      Node root = compiler.getInput(inputId).getAstRoot(compiler);
+      builder.put(file.getName(), new ParsedExtern(file, inputId,
+          root, ImmutableList.<JSError>builder()
+              .add(compiler.getErrors())
+              .add(compiler.getWarnings())
+              .build()));
+    }
+    return new ExternsSnapshot(builder.build(), options);
+  }
+
+  /** Returns the externs in this snapshot, in the order they were given. */
+  public List<SourceFile> getExterns() {
+    ImmutableList.Builder<SourceFile> files = ImmutableList.builder();
+    for (ParsedExtern extern : externs.values()) {
+      files.add(extern.file);
+    }
+    return files.build();
+  }
+
+  /**
+   * Whether a compile with the given options would parse the externs the
+   * same way the snapshot did.
+   */
+  boolean isCompatibleWith(CompilerOptions options) {
+    return languageIn == options.getLanguageIn()
+        && ideMode == options.ideMode
+        && acceptConstKeyword == options.acceptConstKeyword
+        && extraAnnotationNames.equals(copyOf(options.extraAnnotationNames));
+  }
+
+  /**
+   * Returns an AST for the extern, backed by this snapshot, or null if the
+   * snapshot does not have an extern with the same name and contents.
+   */
+  SourceAst getAst(SourceFile file) {
+    ParsedExtern extern = externs.get(file.getName());
+    if (extern == null) {
+      return null;
+    }
+    if (extern.file != file) {
+      try {
+        if (!Objects.equal(extern.file.getCode(), file.getCode())) {
+          return null;
+        }
+      } catch (IOException e) {
+        // Let the compile parse the file and report the read error.
+        return null;
+      }
+    }
+    return new SnapshotAst(extern);
+  }
+
+  private static ImmutableSet<String> copyOf(Set<String> names) {
+    return names == null
+        ? ImmutableSet.<String>of() : ImmutableSet.copyOf(names);
+  }
+
+  /** The parse of one extern. Never modified once created. */
+  private static class ParsedExtern {
+    final SourceFile file;
+    final InputId inputId;
+    final Node root;
+    final ImmutableList<JSError> diagnostics;
+
+    ParsedExtern(SourceFile file, InputId inputId, Node root,
+        ImmutableList<JSError> diagnostics) {
+      this.file = file;
+      this.inputId = inputId;
+      this.root = root;
+      this.diagnostics = diagnostics;
+    }
+  }
+
+  /**
+   * The AST of an extern for one compile. It is a copy of the parsed extern,
+   * made the first time the compile asks for it.
+   *
+   * The AST is serialized with the compile, but the snapshot is not: it holds
+   * diagnostics, which are not serializable, and it is shared with the other
+   * compiles of the process. So an AST that is read back without its root
+   * parses its file again, like a {@link JsAst} does.
+   */
+  private static class SnapshotAst implements SourceAst {
+    private static final long serialVersionUID = 1L;
+
+    private final SourceFile file;
+    private final InputId inputId;
+    private Node root;
+
+    // The parsed extern to copy the AST from, or null once deserialized.
+    private final transient ParsedExtern extern;
+
+    SnapshotAst(ParsedExtern extern) {
+      this.file = extern.file;
+      this.inputId = extern.inputId;
+      this.extern = extern;
+    }
+
+    @Override
+    public Node getAstRoot(AbstractCompiler compiler) {
+      if (root == null) {
+        if (extern != null) {
+          for (JSError error : extern.diagnostics) {
+            compiler.report(error);
+          }
+          root = extern.root.cloneTree();
+        } else {
+          root = new JsAst(file).getAstRoot(compiler);
+        }
+      }
+      return root;
+    }
+
+    @Override
+    public void clearAst() {
+      root = null;
+    }
+
+    @Override
+    public InputId getInputId() {
+      return inputId;
+    }
+
+    @Override
+    public SourceFile getSourceFile() {
+      return file;
+    }
+
+    @Override
+    public void setSourceFile(SourceFile file) {
+      throw new IllegalStateException(
+          "Cannot set a source file for a snapshot AST");
+    }
+  }
+
+  /** Keeps the diagnostics of a parse, without printing them. */
+  private static class CollectingErrorManager extends BasicErrorManager {
+    @Override
+    public void println(CheckLevel level, JSError error) {}
+
+    @Override
+    protected void printSummary() {}
+  }
+}
@@ -126,7 +126,8 @@ class FunctionArgumentInjector {
       argMap.put(THIS_MARKER, NodeUtil.newUndefinedNode(callNode));
     }
 
-    for (Node fnArg : NodeUtil.getFunctionParameters(fnNode).children()) {
+    for (Node fnArg = NodeUtil.getFunctionParameters(fnNode).getFirstChild();
+         fnArg != null; fnArg = fnArg.getNext()) {
       if (cArg != null) {
         argMap.put(fnArg.getString(), cArg);
         cArg = cArg.getNext();
@@ -210,7 +211,7 @@ class FunctionArgumentInjector {
       inInnerFunction = true;
     }
 
-    for (Node c : n.children()) {
+    for (Node c = n.getFirstChild(); c != null; c = c.getNext()) {
       findModifiedParameters(c, n, names, unsafe, inInnerFunction);
     }
 
@@ -493,7 +494,8 @@ class FunctionArgumentInjector {
    */
   private static Set<String> getFunctionParameterSet(Node fnNode) {
     Set<String> set = Sets.newHashSet();
-    for (Node n : NodeUtil.getFunctionParameters(fnNode).children()) {
+    for (Node n = NodeUtil.getFunctionParameters(fnNode).getFirstChild();
+         n != null; n = n.getNext()) {
       set.add(n.getString());
     }
     return set;
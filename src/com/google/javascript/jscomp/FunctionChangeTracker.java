@@ -0,0 +1,106 @@
+/*
+ * Copyright 2013 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.Maps;
+import com.google.javascript.rhino.Node;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Tracks which top level functions changed while the passes of a fixed point
+ * loop ran, so that function-local passes (see
+ * {@link PassFactory#isFunctionLocal()}) only revisit the functions that
+ * changed since they last ran. A top level function is one that is not
+ * inside another function.
+ *
+ * Changes are found with {@link Node#isChangedFunction()}, which the
+ * mutators of Node set, so passes do not need to report where they changed
+ * the AST. Changes of props alone are not seen.
+ *
+ */
+class FunctionChangeTracker {
+
+  // The number of passes started so far.
+  private int run = 0;
+
+  // The run in which each top level function last changed. Functions that
+  // have not changed since the tracker was created are at run 0.
+  private Map<Node, Integer> lastChanged = new IdentityHashMap<Node, Integer>();
+
+  // The run in which each pass last started.
+  private final Map<String, Integer> lastStarted = Maps.newHashMap();
+
+  /** @param root The root of the AST the passes run over. */
+  FunctionChangeTracker(Node root) {
+    update(root);
+  }
+
+  /**
+   * Records that a pass starts.
+   *
+   * @return The top level functions the pass needs to visit: all of them the
+   *     first time the pass runs, and after that the ones that changed since
+   *     it last started, including the ones it changed itself.
+   */
+  Predicate<Node> startPass(String passName) {
+    run++;
+    final Integer since = lastStarted.put(passName, run);
+    return new Predicate<Node>() {
+      @Override
+      public boolean apply(Node fn) {
+        if (since == null) {
+          return true;
+        }
+        Integer changed = lastChanged.get(fn);
+        return changed == null || changed >= since;
+      }
+    };
+  }
+
+  /** Records the changes made by the pass that was started last. */
+  void endPass(Node root) {
+    update(root);
+  }
+
+  private void update(Node root) {
+    Map<Node, Integer> functions = new IdentityHashMap<Node, Integer>();
+    findFunctions(root, functions);
+    lastChanged = functions;
+  }
+
+  /**
+   * Collects the top level functions under a node. Functions that are new or
+   * changed are stamped with the current run, and marked as unchanged again.
+   */
+  private void findFunctions(Node n, Map<Node, Integer> functions) {
+    for (Node c = n.getFirstChild(); c != null; c = c.getNext()) {
+      if (c.isFunction()) {
+        Integer changed = lastChanged.get(c);
+        if (changed == null || c.isChangedFunction()) {
+          changed = run;
+          c.clearChangedFunction();
+        }
+        functions.put(c, changed);
+      } else {
+        findFunctions(c, functions);
+      }
+    }
+  }
+}
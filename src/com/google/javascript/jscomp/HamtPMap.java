@@ -0,0 +1,261 @@
+/*
+ * Copyright 2013 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import java.util.List;
+
+/**
+ * An immutable map, stored as a hash array mapped trie. Adding a key makes a
+ * new map that shares all of the trie with the old map except the path to
+ * the key, so that maps made from one another take little memory.
+ *
+ * The shape of the trie only depends on the keys in it, and not on the order
+ * in which they were added. So two maps made from a common map share the
+ * parts of the trie that neither of them changed, and {@link #diff} only
+ * walks the parts that differ.
+ *
+ * Keys are compared with equals, and values by identity. Null keys and values
+ * are not allowed.
+ *
+ */
+final class HamtPMap<K, V> {
+
+  private static final int BITS = 5;
+  private static final int MASK = (1 << BITS) - 1;
+
+  private static final HamtPMap<Object, Object> EMPTY =
+      new HamtPMap<Object, Object>(0, new Object[0]);
+
+  // A bit for each of the 32 slots of this node that is used.
+  private final int bitmap;
+
+  // The used slots, in order. Each is an Entry, or a HamtPMap for the keys
+  // whose hashes share the bits of the slot.
+  private final Object[] slots;
+
+  /** The key and value of one entry, and the entries with the same hash. */
+  private static final class Entry {
+    final Object key;
+    final int hash;
+    final Object value;
+    final Entry next;
+
+    Entry(Object key, int hash, Object value, Entry next) {
+      this.key = key;
+      this.hash = hash;
+      this.value = value;
+      this.next = next;
+    }
+  }
+
+  /**
+   * Receives the keys whose values differ between two maps. A value is null
+   * in the map that does not have the key.
+   */
+  interface Differ<K, V> {
+    void apply(K key, V value1, V value2);
+  }
+
+  private HamtPMap(int bitmap, Object[] slots) {
+    this.bitmap = bitmap;
+    this.slots = slots;
+  }
+
+  @SuppressWarnings("unchecked")
+  static <K, V> HamtPMap<K, V> empty() {
+    return (HamtPMap<K, V>) EMPTY;
+  }
+
+  boolean isEmpty() {
+    return bitmap == 0;
+  }
+
+  /** Returns the value of a key, or null if the map does not have the key. */
+  @SuppressWarnings("unchecked")
+  V get(K key) {
+    int hash = key.hashCode();
+    HamtPMap<K, V> node = this;
+    for (int shift = 0; ; shift += BITS) {
+      int bit = bit(hash, shift);
+      if ((node.bitmap & bit) == 0) {
+        return null;
+      }
+      Object slot = node.slots[node.index(bit)];
+      if (slot instanceof Entry) {
+        for (Entry e = (Entry) slot; e != null; e = e.next) {
+          if (e.hash == hash && e.key.equals(key)) {
+            return (V) e.value;
+          }
+        }
+        return null;
+      }
+      node = (HamtPMap<K, V>) slot;
+    }
+  }
+
+  /** Returns a map with a key set to a value, and this map unchanged. */
+  HamtPMap<K, V> plus(K key, V value) {
+    Preconditions.checkNotNull(key);
+    Preconditions.checkNotNull(value);
+    return plus(key, key.hashCode(), value, 0);
+  }
+
+  @SuppressWarnings("unchecked")
+  private HamtPMap<K, V> plus(Object key, int hash, Object value, int shift) {
+    int bit = bit(hash, shift);
+    int index = index(bit);
+    if ((bitmap & bit) == 0) {
+      Object[] newSlots = new Object[slots.length + 1];
+      System.arraycopy(slots, 0, newSlots, 0, index);
+      newSlots[index] = new Entry(key, hash, value, null);
+      System.arraycopy(slots, index, newSlots, index + 1, slots.length - index);
+      return new HamtPMap<K, V>(bitmap | bit, newSlots);
+    }
+
+    Object slot = slots[index];
+    Object newSlot;
+    if (slot instanceof HamtPMap) {
+      HamtPMap<K, V> child = (HamtPMap<K, V>) slot;
+      newSlot = child.plus(key, hash, value, shift + BITS);
+    } else {
+      Entry entry = (Entry) slot;
+      if (entry.hash == hash) {
+        newSlot = replace(entry, key, hash, value);
+      } else {
+        // Two different hashes share this slot, so they move down a level.
+        HamtPMap<K, V> child = HamtPMap.<K, V>empty();
+        for (Entry e = entry; e != null; e = e.next) {
+          child = child.plus(e.key, e.hash, e.value, shift + BITS);
+        }
+        newSlot = child.plus(key, hash, value, shift + BITS);
+      }
+    }
+    if (newSlot == slot) {
+      return this;
+    }
+    Object[] newSlots = slots.clone();
+    newSlots[index] = newSlot;
+    return new HamtPMap<K, V>(bitmap, newSlots);
+  }
+
+  /** Sets a key in a list of entries with the same hash. */
+  private static Entry replace(Entry list, Object key, int hash, Object value) {
+    for (Entry e = list; e != null; e = e.next) {
+      if (e.key.equals(key)) {
+        if (e.value == value) {
+          return list;
+        }
+        Entry result = e.next;
+        for (Entry other = list; other != e; other = other.next) {
+          result = new Entry(other.key, hash, other.value, result);
+        }
+        return new Entry(key, hash, value, result);
+      }
+    }
+    return new Entry(key, hash, value, list);
+  }
+
+  /**
+   * Calls a differ for each key that only one of two maps has, or that the
+   * maps have with different values. The parts of the tries that the maps
+   * share are skipped.
+   */
+  static <K, V> void diff(
+      HamtPMap<K, V> map1, HamtPMap<K, V> map2, Differ<K, V> differ) {
+    if (map1 == map2) {
+      return;
+    }
+    int bits = map1.bitmap | map2.bitmap;
+    while (bits != 0) {
+      int bit = Integer.lowestOneBit(bits);
+      bits &= ~bit;
+      Object slot1 = map1.slot(bit);
+      Object slot2 = map2.slot(bit);
+      if (slot1 == slot2) {
+        continue;
+      }
+      if (slot1 instanceof HamtPMap && slot2 instanceof HamtPMap) {
+        HamtPMap<K, V> child1 = cast(slot1);
+        HamtPMap<K, V> child2 = cast(slot2);
+        diff(child1, child2, differ);
+      } else {
+        diffEntries(entries(slot1), entries(slot2), differ);
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <K, V> void diffEntries(
+      List<Entry> entries1, List<Entry> entries2, Differ<K, V> differ) {
+    for (Entry e1 : entries1) {
+      Entry e2 = find(entries2, e1);
+      if (e2 == null || e2.value != e1.value) {
+        differ.apply((K) e1.key, (V) e1.value,
+            e2 == null ? null : (V) e2.value);
+      }
+    }
+    for (Entry e2 : entries2) {
+      if (find(entries1, e2) == null) {
+        differ.apply((K) e2.key, null, (V) e2.value);
+      }
+    }
+  }
+
+  private static Entry find(List<Entry> entries, Entry entry) {
+    for (Entry e : entries) {
+      if (e.hash == entry.hash && e.key.equals(entry.key)) {
+        return e;
+      }
+    }
+    return null;
+  }
+
+  /** Returns the entries under a slot, which may be null. */
+  private static List<Entry> entries(Object slot) {
+    List<Entry> result = Lists.newArrayList();
+    if (slot instanceof Entry) {
+      for (Entry e = (Entry) slot; e != null; e = e.next) {
+        result.add(e);
+      }
+    } else if (slot != null) {
+      for (Object child : ((HamtPMap<?, ?>) slot).slots) {
+        result.addAll(entries(child));
+      }
+    }
+    return result;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <K, V> HamtPMap<K, V> cast(Object node) {
+    return (HamtPMap<K, V>) node;
+  }
+
+  private Object slot(int bit) {
+    return (bitmap & bit) == 0 ? null : slots[index(bit)];
+  }
+
+  private int index(int bit) {
+    return Integer.bitCount(bitmap & (bit - 1));
+  }
+
+  private static int bit(int hash, int shift) {
+    return 1 << ((hash >>> shift) & MASK);
+  }
+}
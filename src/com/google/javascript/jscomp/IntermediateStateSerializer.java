@@ -0,0 +1,207 @@
+/*
+ * Copyright 2013 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.javascript.jscomp.Compiler.IntermediateState;
+import com.google.javascript.rhino.BinaryNodeReader;
+import com.google.javascript.rhino.BinaryNodeWriter;
+import com.google.javascript.rhino.JSDocInfo;
+import com.google.javascript.rhino.Node;
+import com.google.javascript.rhino.jstype.JSTypeRegistry;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes and reads {@link IntermediateState}s in a binary format that is
+ * much smaller and faster than Java serialization of the same state.
+ *
+ * The AST, which makes up most of a state, is written with a
+ * {@link BinaryNodeWriter}: strings and JSDoc are written once and
+ * referenced by index, and source positions are variable length numbers.
+ * The rest of the state, including the type registry, is written with Java
+ * serialization, in which every node and JSDoc of the AST is replaced by its
+ * index. The types of the nodes are written once, as part of that rest, and
+ * the nodes refer to them by index as well.
+ *
+ * States are written and read as streams, without holding a second copy of
+ * the state in memory.
+ *
+ */
+final class IntermediateStateSerializer {
+
+  private static final int MAGIC = 0x4A534353;
+  private static final int VERSION = 1;
+
+  private IntermediateStateSerializer() {}
+
+  /** Writes a state, which must have been captured after parsing. */
+  static void write(IntermediateState state, OutputStream out)
+      throws IOException {
+    Node root = state.jsRoot.getParent();
+    Preconditions.checkState(
+        root != null && root == state.externsRoot.getParent(),
+        "The externs and the sources must share a root");
+
+    BufferedOutputStream buffered = new BufferedOutputStream(out);
+    DataOutputStream header = new DataOutputStream(buffered);
+    header.writeInt(MAGIC);
+    header.writeInt(VERSION);
+    header.writeInt(BinaryNodeWriter.FORMAT_VERSION);
+
+    BinaryNodeWriter writer = new BinaryNodeWriter(buffered);
+    writer.writeTree(root);
+    writer.flush();
+
+    ObjectOutputStream objects = new StateOutputStream(buffered, writer);
+    objects.writeObject(Lists.newArrayList(writer.getExternalObjects()));
+    objects.writeObject(state.externs);
+    objects.writeObject(state.inputs);
+    objects.writeObject(state.modules);
+    objects.writeObject(state.passConfigState);
+    objects.writeObject(state.typeRegistry);
+    objects.writeObject(state.lifeCycleStage);
+    objects.writeObject(state.injectedLibraries);
+    objects.flush();
+  }
+
+  /**
+   * Reads a state written by {@link #write}. The stream may be read past the
+   * end of the state.
+   */
+  @SuppressWarnings("unchecked")
+  static IntermediateState read(InputStream in) throws IOException {
+    BufferedInputStream buffered = new BufferedInputStream(in);
+    DataInputStream header = new DataInputStream(buffered);
+    if (header.readInt() != MAGIC) {
+      throw new IOException("Not a compiler state");
+    }
+    int version = header.readInt();
+    int nodeVersion = header.readInt();
+    if (version != VERSION
+        || nodeVersion != BinaryNodeWriter.FORMAT_VERSION) {
+      throw new IOException("Unsupported state version: "
+          + version + "." + nodeVersion);
+    }
+
+    BinaryNodeReader reader = new BinaryNodeReader(buffered);
+    Node root = reader.readTree();
+
+    ObjectInputStream objects = new StateInputStream(buffered, reader);
+    IntermediateState state = new IntermediateState();
+    try {
+      reader.setExternalObjects((List<?>) objects.readObject());
+      state.externsRoot = root.getFirstChild();
+      state.jsRoot = root.getLastChild();
+      state.externs = (List<CompilerInput>) objects.readObject();
+      state.inputs = (List<CompilerInput>) objects.readObject();
+      state.modules = (List<JSModule>) objects.readObject();
+      state.passConfigState = (PassConfig.State) objects.readObject();
+      state.typeRegistry = (JSTypeRegistry) objects.readObject();
+      state.lifeCycleStage =
+          (AbstractCompiler.LifeCycleStage) objects.readObject();
+      state.injectedLibraries = (Map<String, Node>) objects.readObject();
+    } catch (ClassNotFoundException e) {
+      throw new IOException(e);
+    } catch (ClassCastException e) {
+      throw new IOException(e);
+    }
+    return state;
+  }
+
+  /** Stands in for a node of the AST in the Java serialized objects. */
+  private static class NodeReference implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    final int index;
+
+    NodeReference(int index) {
+      this.index = index;
+    }
+  }
+
+  /** Stands in for JSDoc of the AST in the Java serialized objects. */
+  private static class JSDocReference implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    final int index;
+
+    JSDocReference(int index) {
+      this.index = index;
+    }
+  }
+
+  private static class StateOutputStream extends ObjectOutputStream {
+    private final BinaryNodeWriter writer;
+
+    StateOutputStream(OutputStream out, BinaryNodeWriter writer)
+        throws IOException {
+      super(out);
+      this.writer = writer;
+      enableReplaceObject(true);
+    }
+
+    @Override
+    protected Object replaceObject(Object obj) {
+      if (obj instanceof Node) {
+        int index = writer.getNodeIndex((Node) obj);
+        if (index >= 0) {
+          return new NodeReference(index);
+        }
+      } else if (obj instanceof JSDocInfo) {
+        int index = writer.getJSDocIndex((JSDocInfo) obj);
+        if (index >= 0) {
+          return new JSDocReference(index);
+        }
+      }
+      return obj;
+    }
+  }
+
+  private static class StateInputStream extends ObjectInputStream {
+    private final BinaryNodeReader reader;
+
+    StateInputStream(InputStream in, BinaryNodeReader reader)
+        throws IOException {
+      super(in);
+      this.reader = reader;
+      enableResolveObject(true);
+    }
+
+    @Override
+    protected Object resolveObject(Object obj) throws IOException {
+      if (obj instanceof NodeReference) {
+        return reader.getNode(((NodeReference) obj).index);
+      } else if (obj instanceof JSDocReference) {
+        return reader.getJSDocInfo(((JSDocReference) obj).index);
+      }
+      return obj;
+    }
+  }
+}
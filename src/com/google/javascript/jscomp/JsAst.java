@@ -17,14 +17,21 @@
 package com.google.javascript.jscomp;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 
+import com.google.javascript.jscomp.parsing.Config;
 import com.google.javascript.jscomp.parsing.ParserRunner;
 
 import com.google.javascript.rhino.IR;
 import com.google.javascript.rhino.InputId;
 import com.google.javascript.rhino.Node;
+import com.google.javascript.rhino.head.ErrorReporter;
+import com.google.javascript.rhino.head.EvaluatorException;
+import com.google.javascript.rhino.head.ast.AstRoot;
+import com.google.javascript.rhino.head.ast.IdeErrorReporter;
 import java.io.IOException;
 
+import java.util.List;
 import java.util.logging.Logger;
 
 /**
@@ -40,6 +47,10 @@ public class JsAst implements SourceAst {
   private String fileName;
   private Node root;
 
+  // The result of a parse done ahead of time by {@link #preparse}, which
+  // has not been handed to the compiler yet.
+  private transient PreparsedAst preparsed;
+
   public JsAst(SourceFile sourceFile) {
     this.inputId = new InputId(sourceFile.getName());
     this.sourceFile = sourceFile;
@@ -49,7 +60,11 @@ public class JsAst implements SourceAst {
   @Override
   public Node getAstRoot(AbstractCompiler compiler) {
     if (root == null) {
-      parse(compiler);
+      if (preparsed != null) {
+        attachPreparsed(compiler);
+      } else {
+        parse(compiler);
+      }
       root.setInputId(inputId);
     }
     return root;
@@ -58,6 +73,7 @@ public class JsAst implements SourceAst {
   @Override
   public void clearAst() {
     root = null;
+    preparsed = null;
     // While we're at it, clear out any saved text in the source file on
     // the assumption that if we're dumping the parse tree, then we probably
     // assume regenerating everything else is a smart idea also.
@@ -83,10 +99,9 @@ public class JsAst implements SourceAst {
   private void parse(AbstractCompiler compiler) {
     try {
       logger_.fine("Parsing: " + sourceFile.getName());
-      ParserRunner.ParseResult result = ParserRunner.parse(sourceFile, sourceFile.getCode(),
+      ParserRunner.ParseResult result = parseOrLoad(compiler,
           compiler.getParserConfig(),
-          compiler.getDefaultErrorReporter(),
-          logger_);
+          compiler.getDefaultErrorReporter());
       root = result.ast;
       compiler.setOldParseTree(sourceFile.getName(), result.oldAst);
     } catch (IOException e) {
@@ -105,4 +120,202 @@ public class JsAst implements SourceAst {
     // the source file and module.
     root.setStaticSourceFile(sourceFile);
   }
+
+  /**
+   * Parses the source file, or loads the AST of an identical earlier parse
+   * from the compiler's AST cache. Only parses that reported nothing are
+   * cached, so a loaded AST has nothing to report.
+   */
+  private ParserRunner.ParseResult parseOrLoad(AbstractCompiler compiler,
+      Config config, ErrorReporter reporter) throws IOException {
+    String code = sourceFile.getCode();
+    PersistentAstCache cache = compiler.getAstCache();
+    if (cache == null || compiler.isIdeMode()) {
+      return ParserRunner.parse(sourceFile, code, config, reporter, logger_);
+    }
+
+    Node cached = cache.load(sourceFile, code, config);
+    if (cached != null) {
+      return new ParserRunner.ParseResult(cached, null);
+    }
+
+    BufferedErrorReporter buffer = new BufferedErrorReporter();
+    ParserRunner.ParseResult result =
+        ParserRunner.parse(sourceFile, code, config, buffer, logger_);
+    buffer.replay(reporter);
+    if (result.ast != null && buffer.isEmpty()) {
+      cache.store(sourceFile, code, config, result.ast);
+    }
+    return result;
+  }
+
+  /**
+   * Parses the source file without reporting anything to the compiler, so
+   * that it is safe to call from a thread other than the compiler thread.
+   * The AST and any diagnostics are held until the next call to
+   * {@link #getAstRoot}, which reports them as if the parse happened then.
+   * That keeps errors in input order, however the parses were scheduled.
+   *
+   * @param config The parser config, which must already be initialized.
+   */
+  void preparse(AbstractCompiler compiler, Config config) {
+    if (root != null || preparsed != null) {
+      return;
+    }
+
+    BufferedErrorReporter reporter = new BufferedErrorReporter();
+    PreparsedAst result = new PreparsedAst(reporter);
+    try {
+      logger_.fine("Parsing: " + sourceFile.getName());
+      ParserRunner.ParseResult parse =
+          parseOrLoad(compiler, config, reporter);
+      result.ast = parse.ast;
+      result.oldAst = parse.oldAst;
+    } catch (IOException e) {
+      result.readError = true;
+    }
+
+    // Whether the tree is kept depends on the errors reported by earlier
+    // inputs, so it can only be decided on the compiler thread. Preparing a
+    // tree that ends up discarded is harmless.
+    if (result.ast != null) {
+      compiler.prepareAst(result.ast);
+    }
+    preparsed = result;
+  }
+
+  /**
+   * Reports the buffered diagnostics of a preparsed AST and adopts it the
+   * same way {@link #parse} would have.
+   */
+  private void attachPreparsed(AbstractCompiler compiler) {
+    PreparsedAst result = preparsed;
+    preparsed = null;
+
+    result.reporter.replay(compiler.getDefaultErrorReporter());
+    if (result.readError) {
+      compiler.report(
+          JSError.make(AbstractCompiler.READ_ERROR, sourceFile.getName()));
+    } else {
+      compiler.setOldParseTree(sourceFile.getName(), result.oldAst);
+    }
+
+    if (result.ast == null || compiler.hasHaltingErrors()) {
+      root = IR.script();
+    } else {
+      root = result.ast;
+    }
+    root.setStaticSourceFile(sourceFile);
+  }
+
+  /** The output of {@link #preparse}. */
+  private static class PreparsedAst {
+    final BufferedErrorReporter reporter;
+    Node ast = null;
+    AstRoot oldAst = null;
+    boolean readError = false;
+
+    PreparsedAst(BufferedErrorReporter reporter) {
+      this.reporter = reporter;
+    }
+  }
+
+  /**
+   * Records parser diagnostics so that they can be forwarded to the
+   * compiler's reporter later, in the order they were produced.
+   */
+  private static class BufferedErrorReporter implements IdeErrorReporter {
+    private final List<Diagnostic> diagnostics = Lists.newArrayList();
+
+    private static class Diagnostic {
+      final boolean isError;
+      final boolean isRuntimeError;
+      final boolean hasOffset;
+      final String message;
+      final String sourceName;
+      final int line;
+      final String lineSource;
+      final int lineOffset;
+      final int length;
+
+      Diagnostic(boolean isError, boolean isRuntimeError, boolean hasOffset,
+          String message, String sourceName, int line, String lineSource,
+          int lineOffset, int length) {
+        this.isError = isError;
+        this.isRuntimeError = isRuntimeError;
+        this.hasOffset = hasOffset;
+        this.message = message;
+        this.sourceName = sourceName;
+        this.line = line;
+        this.lineSource = lineSource;
+        this.lineOffset = lineOffset;
+        this.length = length;
+      }
+    }
+
+    @Override
+    public void warning(String message, String sourceName, int line,
+        String lineSource, int lineOffset) {
+      diagnostics.add(new Diagnostic(false, false, false,
+          message, sourceName, line, lineSource, lineOffset, 0));
+    }
+
+    @Override
+    public void warning(String message, String sourceName,
+        int offset, int length) {
+      diagnostics.add(new Diagnostic(false, false, true,
+          message, sourceName, 0, null, offset, length));
+    }
+
+    @Override
+    public void error(String message, String sourceName, int line,
+        String lineSource, int lineOffset) {
+      diagnostics.add(new Diagnostic(true, false, false,
+          message, sourceName, line, lineSource, lineOffset, 0));
+    }
+
+    @Override
+    public void error(String message, String sourceName,
+        int offset, int length) {
+      diagnostics.add(new Diagnostic(true, false, true,
+          message, sourceName, 0, null, offset, length));
+    }
+
+    @Override
+    public EvaluatorException runtimeError(String message, String sourceName,
+        int line, String lineSource, int lineOffset) {
+      diagnostics.add(new Diagnostic(true, true, false,
+          message, sourceName, line, lineSource, lineOffset, 0));
+      return new EvaluatorException(
+          message, sourceName, line, lineSource, lineOffset);
+    }
+
+    boolean isEmpty() {
+      return diagnostics.isEmpty();
+    }
+
+    void replay(ErrorReporter target) {
+      for (Diagnostic d : diagnostics) {
+        if (d.isRuntimeError) {
+          target.runtimeError(
+              d.message, d.sourceName, d.line, d.lineSource, d.lineOffset);
+        } else if (d.hasOffset) {
+          // The parser only reports by offset to an IdeErrorReporter, and
+          // the compiler's default reporter is one.
+          IdeErrorReporter ideTarget = (IdeErrorReporter) target;
+          if (d.isError) {
+            ideTarget.error(d.message, d.sourceName, d.lineOffset, d.length);
+          } else {
+            ideTarget.warning(d.message, d.sourceName, d.lineOffset, d.length);
+          }
+        } else if (d.isError) {
+          target.error(
+              d.message, d.sourceName, d.line, d.lineSource, d.lineOffset);
+        } else {
+          target.warning(
+              d.message, d.sourceName, d.line, d.lineSource, d.lineOffset);
+        }
+      }
+    }
+  }
 }
@@ -17,8 +17,7 @@
 package com.google.javascript.jscomp;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Maps;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.google.javascript.jscomp.Scope.Var;
 import com.google.javascript.jscomp.type.FlowScope;
@@ -29,7 +28,7 @@ import com.google.javascript.rhino.jstype.StaticScope;
 import com.google.javascript.rhino.jstype.StaticSlot;
 
 import java.util.Iterator;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -288,21 +287,20 @@ class LinkedFlowScope implements FlowScope {
         return true;
       }
 
-      Map<String, StaticSlot<JSType>> myFlowSlots = allFlowSlots();
-      Map<String, StaticSlot<JSType>> otherFlowSlots = that.allFlowSlots();
-
-      for (StaticSlot<JSType> slot : myFlowSlots.values()) {
-        if (diffSlots(slot, otherFlowSlots.get(slot.getName()))) {
-          return false;
-        }
-        otherFlowSlots.remove(slot.getName());
-      }
-      for (StaticSlot<JSType> slot : otherFlowSlots.values()) {
-        if (diffSlots(slot, myFlowSlots.get(slot.getName()))) {
-          return false;
-        }
-      }
-      return true;
+      // The symbol maps of the two scopes share the parts that neither
+      // changed since they split, so only the slots that differ are compared.
+      final boolean[] differs = {false};
+      HamtPMap.diff(allFlowSlots(), that.allFlowSlots(),
+          new HamtPMap.Differ<String, StaticSlot<JSType>>() {
+            @Override
+            public void apply(String name, StaticSlot<JSType> slotA,
+                StaticSlot<JSType> slotB) {
+              if (!differs[0] && diffSlots(slotA, slotB)) {
+                differs[0] = true;
+              }
+            }
+          });
+      return !differs[0];
     }
     return false;
   }
@@ -311,7 +309,7 @@ class LinkedFlowScope implements FlowScope {
    * Determines whether two slots are meaningfully different for the
    * purposes of data flow analysis.
    */
-  private boolean diffSlots(StaticSlot<JSType> slotA,
+  private static boolean diffSlots(StaticSlot<JSType> slotA,
                             StaticSlot<JSType> slotB) {
     boolean aIsNull = slotA == null || slotA.getType() == null;
     boolean bIsNull = slotB == null || slotB.getType() == null;
@@ -342,22 +340,23 @@ class LinkedFlowScope implements FlowScope {
    * </code>
    * A FlowScope at FLOW POINT will return a slot for y, but not
    * a slot for x or z.
+   *
+   * The result shares all of the symbols of the closest cache that were
+   * not redefined since.
    */
-  private Map<String, StaticSlot<JSType>> allFlowSlots() {
-    Map<String, StaticSlot<JSType>> slots = Maps.newHashMap();
+  private HamtPMap<String, StaticSlot<JSType>> allFlowSlots() {
+    List<LinkedFlowSlot> linkedSlots = Lists.newArrayList();
     for (LinkedFlowSlot slot = lastSlot;
          slot != null; slot = slot.parent) {
-      if (!slots.containsKey(slot.getName())) {
-        slots.put(slot.getName(), slot);
-      }
+      linkedSlots.add(slot);
     }
 
-    for (Map.Entry<String, StaticSlot<JSType>> symbolEntry : cache.symbols.entrySet()) {
-      if (!slots.containsKey(symbolEntry.getKey())) {
-        slots.put(symbolEntry.getKey(), symbolEntry.getValue());
-      }
+    // The latest definition of a symbol wins, so add them oldest first.
+    HamtPMap<String, StaticSlot<JSType>> slots = cache.symbols;
+    for (int i = linkedSlots.size() - 1; i >= 0; i--) {
+      LinkedFlowSlot slot = linkedSlots.get(i);
+      slots = slots.plus(slot.getName(), slot);
     }
-
     return slots;
   }
 
@@ -385,8 +384,9 @@ class LinkedFlowScope implements FlowScope {
     private final LinkedFlowScope linkedEquivalent;
 
     // All the symbols defined before this point in the local flow.
-    // May not include lazily declared qualified names.
-    private Map<String, StaticSlot<JSType>> symbols = Maps.newHashMap();
+    // May not include lazily declared qualified names. The map is
+    // persistent, so caches made from one another share most of it.
+    private final HamtPMap<String, StaticSlot<JSType>> symbols;
 
     // Used to help make lookup faster for LinkedFlowScopes by recording
     // symbols that may be redefined "soon", for an arbitrary definition
@@ -401,7 +401,7 @@ class LinkedFlowScope implements FlowScope {
     // The cache at the bottom of the lattice.
     FlatFlowScopeCache(Scope functionScope) {
       this.functionScope = functionScope;
-      symbols = ImmutableMap.of();
+      symbols = HamtPMap.empty();
       linkedEquivalent = null;
     }
 
@@ -424,10 +424,10 @@ class LinkedFlowScope implements FlowScope {
       functionScope = joinedScopeA.flowsFromBottom() ?
           joinedScopeB.getFunctionScope() : joinedScopeA.getFunctionScope();
 
-      Map<String, StaticSlot<JSType>> slotsA = joinedScopeA.allFlowSlots();
-      Map<String, StaticSlot<JSType>> slotsB = joinedScopeB.allFlowSlots();
-
-      symbols = slotsA;
+      HamtPMap<String, StaticSlot<JSType>> slotsA =
+          joinedScopeA.allFlowSlots();
+      HamtPMap<String, StaticSlot<JSType>> slotsB =
+          joinedScopeB.allFlowSlots();
 
       // There are 5 different join cases:
       // 1) The type is declared in joinedScopeA, not in joinedScopeB,
@@ -440,9 +440,19 @@ class LinkedFlowScope implements FlowScope {
       //    not in joinedScopeA. Join the two types.
       // 5) The type is declared in joinedScopeA and joinedScopeB. Join
       //    the two types.
-      Set<String> symbolNames = Sets.newHashSet(symbols.keySet());
-      symbolNames.addAll(slotsB.keySet());
-
+      // The symbols that both scopes have with the same slot need no join,
+      // so only the symbols where the two maps differ are visited.
+      final List<String> symbolNames = Lists.newArrayList();
+      HamtPMap.diff(slotsA, slotsB,
+          new HamtPMap.Differ<String, StaticSlot<JSType>>() {
+            @Override
+            public void apply(String name, StaticSlot<JSType> slotA,
+                StaticSlot<JSType> slotB) {
+              symbolNames.add(name);
+            }
+          });
+
+      HamtPMap<String, StaticSlot<JSType>> joined = slotsA;
       for (String name : symbolNames) {
         StaticSlot<JSType> slotA = slotsA.get(name);
         StaticSlot<JSType> slotB = slotsB.get(name);
@@ -464,7 +474,7 @@ class LinkedFlowScope implements FlowScope {
           JSType fnSlotType = fnSlot == null ? null : fnSlot.getType();
           if (fnSlotType == null) {
             // Case #2
-            symbols.put(name, slotB);
+            joined = joined.plus(name, slotB);
           } else {
             // Case #4
             joinedType = slotB.getType().getLeastSupertype(fnSlotType);
@@ -476,20 +486,19 @@ class LinkedFlowScope implements FlowScope {
         }
 
         if (joinedType != null) {
-          symbols.put(name, new SimpleSlot(name, joinedType, true));
+          joined = joined.plus(name, new SimpleSlot(name, joinedType, true));
         }
       }
+      symbols = joined;
     }
 
     /**
      * Get the slot for the given symbol.
      */
     public StaticSlot<JSType> getSlot(String name) {
-      if (symbols.containsKey(name)) {
-        return symbols.get(name);
-      } else {
-        return functionScope.getSlot(name);
-      }
+      // Callers look up null names for properties without qualified names.
+      StaticSlot<JSType> slot = name == null ? null : symbols.get(name);
+      return slot != null ? slot : functionScope.getSlot(name);
     }
   }
 }
@@ -20,6 +20,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import com.google.javascript.rhino.InputId;
 import com.google.javascript.rhino.Node;
+import com.google.javascript.rhino.SubtreeSummaries;
 import com.google.javascript.rhino.Token;
 
 import java.util.ArrayDeque;
@@ -80,6 +81,14 @@ public class NodeTraversal {
   /** Possible callback for scope entry and exist **/
   private ScopedCallback scopeCallback;
 
+  /** The nodes whose children are being traversed, see Frame */
+  private final List<Frame> frames = Lists.newArrayList();
+
+  /** The number of frames in use */
+  private int depth = 0;
+
+  private static final int NOT_A_FUNCTION = -1;
+
   /**
    * Callback
    */
@@ -215,6 +224,32 @@ public class NodeTraversal {
     }
   }
 
+  /**
+   * Abstract callback to visit all nodes in post order, except in the
+   * functions and scripts that have none of the given node types, which are
+   * skipped as a whole (see {@link SubtreeSummaries#hasTypeInSubtree}). For
+   * passes that only look at nodes of a few types.
+   */
+  public abstract static class AbstractSubtreeTypePruningCallback
+      implements Callback {
+    private final long[] typeMask;
+
+    /**
+     * @param nodeTypes the node types the callback looks at
+     */
+    public AbstractSubtreeTypePruningCallback(Set<Integer> nodeTypes) {
+      this.typeMask = SubtreeSummaries.getTypeMask(nodeTypes);
+    }
+
+    @Override
+    public final boolean shouldTraverse(NodeTraversal nodeTraversal, Node n,
+        Node parent) {
+      return !(n.isFunction() || n.isScript())
+          || nodeTraversal.getCompiler().getSubtreeSummaries()
+              .hasTypeInSubtree(n, typeMask);
+    }
+  }
+
   /**
    * Creates a node traversal using the specified callback interface.
    */
@@ -472,77 +507,143 @@ public class NodeTraversal {
   }
 
   /**
-   * Traverses a branch.
+   * A node of the tree whose children are being traversed. The traversal
+   * keeps these on an explicit stack instead of recursing, so that deeply
+   * nested code, such as long chains of string concatenation, does not
+   * overflow the Java stack.
    */
-  @SuppressWarnings("fallthrough")
-  private void traverseBranch(Node n, Node parent) {
-    int type = n.getType();
-    if (type == Token.SCRIPT) {
-      inputId = n.getInputId();
-      sourceName = getSourceName(n);
-    }
+  private static class Frame {
+    Node n;
+    Node parent;
 
-    curNode = n;
-    if (!callback.shouldTraverse(this, n, parent)) return;
+    // The next child to traverse, for nodes other than functions.
+    Node next;
 
-    switch (type) {
-      case Token.FUNCTION:
-        traverseFunction(n, parent);
-        break;
+    // How far the traversal of a function got; see nextChild.
+    int functionState;
+    boolean isFunctionExpression;
+    Node fnName;
+    Node body;
+  }
 
-      default:
-        for (Node child = n.getFirstChild(); child != null; ) {
-          // child could be replaced, in which case our child node
-          // would no longer point to the true next
-          Node next = child.getNext();
-          traverseBranch(child, n);
-          child = next;
-        }
-        break;
+  private Frame pushFrame(Node n, Node parent) {
+    if (depth == frames.size()) {
+      frames.add(new Frame());
     }
+    Frame f = frames.get(depth++);
+    f.n = n;
+    f.parent = parent;
+    return f;
+  }
 
-    curNode = n;
-    callback.visit(this, n, parent);
+  private void popFrame(Frame f) {
+    depth--;
+    f.n = null;
+    f.parent = null;
+    f.next = null;
+    f.fnName = null;
+    f.body = null;
   }
 
   /**
-   * Traverses a function.
+   * Traverses a branch. A callback may start other traversals with this
+   * NodeTraversal, so each call only handles the frames it pushed.
    */
-  private void traverseFunction(Node n, Node parent) {
-    Preconditions.checkState(n.getChildCount() == 3);
-    Preconditions.checkState(n.isFunction());
-
-    final Node fnName = n.getFirstChild();
-
-    boolean isFunctionExpression = (parent != null)
-        && NodeUtil.isFunctionExpression(n);
+  private void traverseBranch(Node root, Node rootParent) {
+    int base = depth;
+    enterNode(root, rootParent);
+    while (depth > base) {
+      Frame f = frames.get(depth - 1);
+      Node child = nextChild(f);
+      if (child != null) {
+        enterNode(child, f.n);
+      } else {
+        Node n = f.n;
+        Node parent = f.parent;
+        popFrame(f);
+        curNode = n;
+        callback.visit(this, n, parent);
+      }
+    }
+  }
 
-    if (!isFunctionExpression) {
-      // Functions declarations are in the scope containing the declaration.
-      traverseBranch(fnName, n);
+  /**
+   * Visits a node in pre order, and pushes a frame for it if its children
+   * are to be traversed.
+   */
+  private void enterNode(Node n, Node parent) {
+    int type = n.getType();
+    if (type == Token.SCRIPT) {
+      inputId = n.getInputId();
+      sourceName = getSourceName(n);
     }
 
     curNode = n;
-    pushScope(n);
+    if (!callback.shouldTraverse(this, n, parent)) return;
 
-    if (isFunctionExpression) {
-      // Function expression names are only accessible within the function
-      // scope.
-      traverseBranch(fnName, n);
+    Frame f = pushFrame(n, parent);
+    if (type == Token.FUNCTION) {
+      Preconditions.checkState(n.getChildCount() == 3);
+      f.functionState = 0;
+      f.fnName = n.getFirstChild();
+      f.isFunctionExpression = (parent != null)
+          && NodeUtil.isFunctionExpression(n);
+    } else {
+      f.functionState = NOT_A_FUNCTION;
+      f.next = n.getFirstChild();
     }
+  }
 
-    final Node args = fnName.getNext();
-    final Node body = args.getNext();
-
-    // Args
-    traverseBranch(args, n);
-
-    // Body
-    Preconditions.checkState(body.getNext() == null &&
-            body.isBlock(), body);
-    traverseBranch(body, n);
+  /**
+   * Returns the next child to traverse, or null once all children have
+   * been traversed.
+   */
+  @SuppressWarnings("fallthrough")
+  private Node nextChild(Frame f) {
+    switch (f.functionState) {
+      case NOT_A_FUNCTION:
+        // The child could be replaced, in which case it would no longer
+        // point to the true next child.
+        Node child = f.next;
+        if (child != null) {
+          f.next = child.getNext();
+        }
+        return child;
+
+      case 0:
+        f.functionState = 1;
+        if (!f.isFunctionExpression) {
+          // Functions declarations are in the scope containing the
+          // declaration.
+          return f.fnName;
+        }
+        // fall through
+      case 1:
+        f.functionState = 2;
+        curNode = f.n;
+        pushScope(f.n);
+        if (f.isFunctionExpression) {
+          // Function expression names are only accessible within the
+          // function scope.
+          return f.fnName;
+        }
+        // fall through
+      case 2:
+        f.functionState = 3;
+        Node args = f.fnName.getNext();
+        f.body = args.getNext();
+        return args;
+
+      case 3:
+        f.functionState = 4;
+        Preconditions.checkState(f.body.getNext() == null &&
+            f.body.isBlock(), f.body);
+        return f.body;
 
-    popScope();
+      default:
+        popScope();
+        return null;
+    }
   }
 
   /** Examines the functions stack for the last instance of a function node. */
@@ -1648,7 +1648,8 @@ public final class NodeUtil {
    * is within the current scope.
    */
   static boolean isWithinLoop(Node n) {
-    for (Node parent : n.getAncestors()) {
+    for (Node parent = n.getParent(); parent != null;
+         parent = parent.getParent()) {
       if (NodeUtil.isLoopStructure(parent)) {
         return true;
       }
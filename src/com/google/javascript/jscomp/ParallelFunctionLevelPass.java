@@ -0,0 +1,145 @@
+/*
+ * Copyright 2013 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.collect.Lists;
+import com.google.javascript.rhino.IR;
+import com.google.javascript.rhino.InputId;
+import com.google.javascript.rhino.Node;
+import com.google.javascript.rhino.Token;
+
+import java.util.List;
+
+/**
+ * Runs a function-local pass (see {@link PassFactory#isFunctionLocal()})
+ * over each top level function concurrently. The functions are detached from
+ * the AST with an {@link AstParallelizer}, each is given to its own instance
+ * of the pass, and the remaining global code is given to one more. The
+ * functions are attached again once every instance has finished.
+ *
+ * Each detached function is wrapped in a synthetic script, so that the pass
+ * sees it in the same kind of context it came from: a function declaration
+ * becomes a statement of the script, and a function expression becomes the
+ * argument of a call.
+ *
+ * The pass may be limited to some of the top level functions; the global code
+ * is always visited.
+ *
+ */
+class ParallelFunctionLevelPass implements CompilerPass {
+
+  private final AbstractCompiler compiler;
+  private final PassFactory factory;
+  private final int threadCount;
+  private final Predicate<Node> functionsToVisit;
+
+  ParallelFunctionLevelPass(
+      AbstractCompiler compiler, PassFactory factory, int threadCount) {
+    this(compiler, factory, threadCount, Predicates.<Node>alwaysTrue());
+  }
+
+  /**
+   * @param functionsToVisit The top level functions to run the pass over.
+   */
+  ParallelFunctionLevelPass(AbstractCompiler compiler, PassFactory factory,
+      int threadCount, Predicate<Node> functionsToVisit) {
+    Preconditions.checkArgument(factory.isFunctionLocal());
+    this.compiler = compiler;
+    this.factory = factory;
+    this.threadCount = threadCount;
+    this.functionsToVisit = functionsToVisit;
+  }
+
+  @Override
+  public void process(Node externs, Node root) {
+    AstParallelizer parallelizer =
+        AstParallelizer.createNewOpaqueFunctionLevelAstParallelizer(root);
+    List<Node> forest = parallelizer.split();
+    List<Node> placeHolders = parallelizer.getPlaceHolders();
+
+    List<Runnable> tasks = Lists.newArrayList();
+    tasks.add(newTask(externs, root));
+
+    // The first tree of the forest is the root itself.
+    // The functions that are not visited stay detached until the join.
+    List<Node> functions = Lists.newArrayList();
+    List<Node> wrappers = Lists.newArrayList();
+    for (int i = 1; i < forest.size(); i++) {
+      Node fn = forest.get(i);
+      if (!functionsToVisit.apply(fn)) {
+        continue;
+      }
+      Node placeHolder = placeHolders.get(i - 1);
+      Node wrapper = wrap(fn, NodeUtil.getInputId(placeHolder),
+          NodeUtil.isFunctionExpression(placeHolder));
+      functions.add(fn);
+      wrappers.add(wrapper);
+      tasks.add(newTask(externs, wrapper));
+    }
+
+    try {
+      compiler.runInParallel(tasks, threadCount);
+    } finally {
+      for (int i = 0; i < functions.size(); i++) {
+        unwrap(functions.get(i), wrappers.get(i));
+      }
+      parallelizer.join();
+    }
+  }
+
+  private Runnable newTask(final Node externs, final Node root) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        factory.create(compiler).process(externs, root);
+      }
+    };
+  }
+
+  /**
+   * Puts a detached function into a synthetic script that belongs to the same
+   * input as the function. The script is given a parent as well, since passes
+   * expect the root they are given to have one.
+   */
+  private static Node wrap(Node fn, InputId inputId, boolean isExpression) {
+    Node script = IR.script();
+    script.setInputId(inputId);
+    script.setStaticSourceFile(fn.getStaticSourceFile());
+    if (isExpression) {
+      script.addChildToBack(IR.exprResult(
+          IR.call(IR.name(AstParallelizer.TEMP_NAME), fn)));
+    } else {
+      script.addChildToBack(fn);
+    }
+    Node container = new Node(Token.BLOCK, script);
+    container.setIsSyntheticBlock(true);
+    return script;
+  }
+
+  private static void unwrap(Node fn, Node wrapper) {
+    Node parent = fn.getParent();
+    Preconditions.checkState(
+        parent == wrapper
+        || (parent != null && parent.isCall()
+            && parent.getParent().getParent() == wrapper),
+        "Function-local passes must not replace a top level function");
+    parent.removeChild(fn);
+  }
+}
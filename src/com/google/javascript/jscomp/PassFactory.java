@@ -53,6 +53,16 @@ public abstract class PassFactory {
     return isOneTimePass;
   }
 
+  /**
+   * @return Whether the pass produced by this factory only looks at and
+   *     changes code within one function at a time, so that it may be run
+   *     over each function separately. Such a pass must not rely on the body
+   *     of any function other than the one it is changing.
+   */
+  boolean isFunctionLocal() {
+    return false;
+  }
+
   /**
    * Creates a new compiler pass to be run.
    */
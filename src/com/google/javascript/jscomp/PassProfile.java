@@ -0,0 +1,202 @@
+/*
+ * Copyright 2013 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The cost and benefit of the passes in the fixed point loops of the
+ * optimizations, measured over many compiles and kept in a file. The
+ * {@link PhaseOptimizer} uses it to run the passes that change code cheaply
+ * first, and to hold back the passes that have not changed code in a long
+ * time until the other passes are done.
+ *
+ * The profile only changes the order in which the passes of a loop run; every
+ * pass still runs until the loop reaches a fixed point. Loops with passes that
+ * the profile knows too little about keep their default order.
+ *
+ * The file is a line per pass with its name, the number of runs, the number
+ * of runs that changed code, and the time of all runs in milliseconds,
+ * separated by tabs.
+ *
+ */
+class PassProfile {
+
+  private static final Logger logger =
+      Logger.getLogger(PassProfile.class.getName());
+
+  private static final String HEADER = "# pass profile v1";
+
+  // The number of runs of a pass needed to trust its numbers.
+  @VisibleForTesting
+  static final int MIN_RUNS = 10;
+
+  // Once a pass has this many runs, the numbers of all passes are halved, so
+  // that the profile follows changes in the code being compiled.
+  @VisibleForTesting
+  static final int MAX_RUNS = 10000;
+
+  private final Map<String, PassStats> stats = Maps.newTreeMap();
+
+  private static class PassStats {
+    int runs;
+    int changes;
+    long runtime;
+  }
+
+  /** Records a run of a pass. */
+  void record(String passName, boolean changed, long runtime) {
+    PassStats s = stats.get(passName);
+    if (s == null) {
+      s = new PassStats();
+      stats.put(passName, s);
+    }
+    s.runs++;
+    if (changed) {
+      s.changes++;
+    }
+    s.runtime += runtime;
+    if (s.runs >= MAX_RUNS) {
+      // The counts are rounded up, so that a pass that changed code once is
+      // not taken for one that never did.
+      for (PassStats other : stats.values()) {
+        other.runs = (other.runs + 1) / 2;
+        other.changes = (other.changes + 1) / 2;
+        other.runtime /= 2;
+      }
+    }
+  }
+
+  /**
+   * Orders the passes of a loop by the number of changes they made per
+   * millisecond, most first. Passes with equal rates keep their order. The
+   * order is kept as is if any of the passes has too few runs.
+   */
+  void order(List<String> passNames) {
+    for (String name : passNames) {
+      if (!isKnown(name)) {
+        return;
+      }
+    }
+    Collections.sort(passNames, new Comparator<String>() {
+      @Override
+      public int compare(String a, String b) {
+        return Double.compare(changeRate(b), changeRate(a));
+      }
+    });
+  }
+
+  /**
+   * Whether a pass has not changed any code in its recorded runs, and can be
+   * held back until the other passes of its loop are done.
+   */
+  boolean isUnproductive(String passName) {
+    return isKnown(passName) && stats.get(passName).changes == 0;
+  }
+
+  private boolean isKnown(String passName) {
+    PassStats s = stats.get(passName);
+    return s != null && s.runs >= MIN_RUNS;
+  }
+
+  private double changeRate(String passName) {
+    PassStats s = stats.get(passName);
+    return s.changes / (s.runtime + 1.0);
+  }
+
+  /**
+   * Reads a profile from a file. A file that does not exist or can not be
+   * read gives an empty profile.
+   */
+  static PassProfile load(File file) {
+    PassProfile profile = new PassProfile();
+    if (!file.isFile()) {
+      return profile;
+    }
+    try {
+      List<String> lines = Files.readLines(file, Charsets.UTF_8);
+      if (lines.isEmpty() || !lines.get(0).equals(HEADER)) {
+        throw new IOException("Not a pass profile");
+      }
+      for (String line : lines.subList(1, lines.size())) {
+        List<String> fields =
+            Lists.newArrayList(Splitter.on('\t').split(line));
+        if (fields.size() != 4) {
+          throw new IOException("Malformed line: " + line);
+        }
+        PassStats s = new PassStats();
+        s.runs = Integer.parseInt(fields.get(1));
+        s.changes = Integer.parseInt(fields.get(2));
+        s.runtime = Long.parseLong(fields.get(3));
+        profile.stats.put(fields.get(0), s);
+      }
+    } catch (IOException e) {
+      return discard(file, e);
+    } catch (NumberFormatException e) {
+      return discard(file, e);
+    }
+    return profile;
+  }
+
+  private static PassProfile discard(File file, Exception e) {
+    logger.log(Level.WARNING, "Ignoring unreadable pass profile " + file, e);
+    return new PassProfile();
+  }
+
+  /**
+   * Writes the profile to a file. The file is replaced at once, so that
+   * compiles that read it at the same time see either the old or the new
+   * profile.
+   */
+  void save(File file) {
+    StringBuilder sb = new StringBuilder(HEADER).append('\n');
+    for (Map.Entry<String, PassStats> entry : stats.entrySet()) {
+      PassStats s = entry.getValue();
+      sb.append(entry.getKey()).append('\t').append(s.runs)
+          .append('\t').append(s.changes)
+          .append('\t').append(s.runtime).append('\n');
+    }
+    try {
+      File directory = file.getAbsoluteFile().getParentFile();
+      directory.mkdirs();
+      File tmp = File.createTempFile("profile", ".tmp", directory);
+      Files.write(sb, tmp, Charsets.UTF_8);
+      if (!tmp.renameTo(file)) {
+        file.delete();
+        if (!tmp.renameTo(file)) {
+          tmp.delete();
+        }
+      }
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Could not save pass profile " + file, e);
+    }
+  }
+}
@@ -446,7 +446,8 @@ class PeepholeRemoveDeadCode extends AbstractPeepholeOptimization {
       Node block = executingCase.getLastChild();
       Preconditions.checkState(block.isBlock());
       if (block.hasChildren()) {
-        for (Node blockChild : block.children()) {
+        for (Node blockChild = block.getFirstChild(); blockChild != null;
+             blockChild = blockChild.getNext()) {
           // If this is a block with a labelless break, it is useless.
           switch (blockChild.getType()) {
             case Token.BREAK:
@@ -41,7 +41,7 @@ import java.util.zip.GZIPOutputStream;
  */
 public class PerformanceTracker {
 
-  private final Node jsRoot;
+  private Node jsRoot;
   private final boolean trackSize;
   private final boolean trackGzSize;
 
@@ -88,6 +88,10 @@ public class PerformanceTracker {
     public int gzDiff = 0;
     public int size = 0;
     public int gzSize = 0;
+
+    // The runtime of the passes that ran as part of this one, see
+    // recordNestedPass.
+    long nestedRuntime = 0;
   }
 
   PerformanceTracker(Node jsRoot, TracerMode mode) {
@@ -118,6 +122,11 @@ public class PerformanceTracker {
     return codeChange;
   }
 
+  /** Sets the root whose size is measured, when the compiler replaces it. */
+  void setJsRoot(Node jsRoot) {
+    this.jsRoot = jsRoot;
+  }
+
   void recordPassStart(String passName, boolean isOneTime) {
     currentPass.push(new Stats(passName, isOneTime));
     codeChange.reset();
@@ -154,6 +163,7 @@ public class PerformanceTracker {
     }
 
     // Update fields that aren't related to code size
+    result = Math.max(0, result - logStats.nestedRuntime);
     logStats.runtime = result;
     logStats.runs = 1;
     summaryStats.runtime += result;
@@ -183,6 +193,29 @@ public class PerformanceTracker {
     }
   }
 
+  /**
+   * Records the runtime of a one-time pass that ran as part of the pass that
+   * is running, such as a check that shared its traversal with other checks.
+   * The runtime is moved from the running pass to the nested pass, so the
+   * total stays the same. Nested passes do not change code.
+   */
+  void recordNestedPass(String passName, long runtime) {
+    currentPass.peek().nestedRuntime += runtime;
+
+    Stats logStats = new Stats(passName, true);
+    logStats.runtime = runtime;
+    logStats.runs = 1;
+    log.add(logStats);
+
+    Stats summaryStats = summary.get(passName);
+    if (summaryStats == null) {
+      summaryStats = new Stats(passName, true);
+      summary.put(passName, summaryStats);
+    }
+    summaryStats.runtime += runtime;
+    summaryStats.runs += 1;
+  }
+
   public int getRuntime() {
     calcTotalStats();
     return runtime;
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2013 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.google.javascript.jscomp.parsing.Config;
+import com.google.javascript.rhino.BinaryNodeReader;
+import com.google.javascript.rhino.BinaryNodeWriter;
+import com.google.javascript.rhino.Node;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A directory of parsed ASTs, which lets a compile skip parsing the sources
+ * that an earlier compile, possibly in another process, has already parsed.
+ *
+ * Each AST is stored in a file named after a hash of the source name, the
+ * source code and the parser config, in the format of
+ * {@link BinaryNodeWriter}. The directory is kept under a size limit by
+ * deleting the least recently used files; loading a file counts as using it.
+ *
+ * The cache may be used from several threads, and by several processes
+ * at once.
+ *
+ */
+public class PersistentAstCache {
+
+  private static final Logger logger =
+      Logger.getLogger(PersistentAstCache.class.getName());
+
+  private static final String SUFFIX = ".ast";
+
+  private static final FileFilter CACHE_FILES = new FileFilter() {
+    @Override
+    public boolean accept(File file) {
+      return file.isFile() && file.getName().endsWith(SUFFIX);
+    }
+  };
+
+  private final File directory;
+  private final long maxSize;
+
+  // The total size of the cache files, or -1 if not known yet.
+  private long size = -1;
+
+  /**
+   * @param directory The directory to keep the ASTs in. It is created if it
+   *     does not exist.
+   * @param maxSize The number of bytes the ASTs may take up.
+   */
+  public PersistentAstCache(File directory, long maxSize) {
+    Preconditions.checkArgument(maxSize > 0);
+    this.directory = directory;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Returns the AST stored for the code, or null if there is none. The
+   * nodes of the AST refer to the given source file.
+   */
+  Node load(SourceFile sourceFile, String code, Config config) {
+    File file = getFile(sourceFile, code, config);
+    if (!file.isFile()) {
+      return null;
+    }
+    try {
+      byte[] bytes = Files.toByteArray(file);
+      Node root = new BinaryNodeReader(
+          new ByteArrayInputStream(bytes), sourceFile).readTree();
+      file.setLastModified(System.currentTimeMillis());
+      return root;
+    } catch (IOException e) {
+      return discard(file, e);
+    } catch (RuntimeException e) {
+      // The file is corrupt, or was written by an incompatible version.
+      return discard(file, e);
+    }
+  }
+
+  private Node discard(File file, Exception e) {
+    logger.log(Level.FINE, "Discarding unreadable AST " + file, e);
+    file.delete();
+    return null;
+  }
+
+  /**
+   * Stores the AST of the code. ASTs that can not be stored, such as ones
+   * that keep the documentation of their JSDoc, are skipped.
+   */
+  void store(SourceFile sourceFile, String code, Config config, Node root) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try {
+      BinaryNodeWriter writer = new BinaryNodeWriter(bytes, sourceFile);
+      writer.writeTree(root);
+      writer.flush();
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    } catch (IllegalArgumentException e) {
+      logger.log(Level.FINE, "Not caching " + sourceFile.getName(), e);
+      return;
+    }
+
+    File file = getFile(sourceFile, code, config);
+    try {
+      directory.mkdirs();
+      // Write to a temporary file first, so that no other compile reads a
+      // partial AST.
+      File tmp = File.createTempFile("ast", ".tmp", directory);
+      Files.write(bytes.toByteArray(), tmp);
+      if (!tmp.renameTo(file)) {
+        tmp.delete();
+        return;
+      }
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Could not cache " + sourceFile.getName(), e);
+      return;
+    }
+    added(file.length());
+  }
+
+  /**
+   * Records that a file of the given size was added, and deletes the least
+   * recently used files if the cache has grown too big.
+   */
+  private synchronized void added(long fileSize) {
+    if (size < 0) {
+      size = sizeOf(listFiles());
+    } else {
+      size += fileSize;
+    }
+    if (size <= maxSize) {
+      return;
+    }
+
+    // Make some room, so that the next few stores do not have to list the
+    // directory again.
+    long target = maxSize - maxSize / 10;
+    File[] files = listFiles();
+    size = sizeOf(files);
+    // Other processes may touch the files while they are sorted, so the
+    // times are read up front.
+    final Map<File, Long> lastUsed = Maps.newHashMap();
+    for (File file : files) {
+      lastUsed.put(file, file.lastModified());
+    }
+    Arrays.sort(files, new Comparator<File>() {
+      @Override
+      public int compare(File a, File b) {
+        return lastUsed.get(a).compareTo(lastUsed.get(b));
+      }
+    });
+    for (File file : files) {
+      if (size <= target) {
+        break;
+      }
+      long length = file.length();
+      if (file.delete()) {
+        size -= length;
+      }
+    }
+  }
+
+  private File[] listFiles() {
+    File[] files = directory.listFiles(CACHE_FILES);
+    return files == null ? new File[0] : files;
+  }
+
+  private static long sizeOf(File[] files) {
+    long total = 0;
+    for (File file : files) {
+      total += file.length();
+    }
+    return total;
+  }
+
+  private File getFile(SourceFile sourceFile, String code, Config config) {
+    Hasher hasher = Hashing.sha1().newHasher()
+        .putInt(BinaryNodeWriter.FORMAT_VERSION);
+    putString(hasher, sourceFile.getName());
+    putString(hasher, config.toString());
+    putString(hasher, code);
+    return new File(directory, hasher.hash().toString() + SUFFIX);
+  }
+
+  private static void putString(Hasher hasher, String value) {
+    // The length keeps the end of one string from passing as the start of
+    // the next.
+    hasher.putInt(value.length()).putString(value);
+  }
+}
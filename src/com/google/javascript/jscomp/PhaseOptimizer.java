@@ -18,14 +18,19 @@ package com.google.javascript.jscomp;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.javascript.jscomp.DefaultPassConfig.FusedChecksFactory;
+import com.google.javascript.jscomp.DefaultPassConfig.TraversalCheckFactory;
 import com.google.javascript.rhino.Node;
 
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.logging.Logger;
 
@@ -68,6 +73,16 @@ class PhaseOptimizer implements CompilerPass {
   private boolean loopMutex = false;
   private PassFactory sanityCheck = null;
   private boolean printAstHashcodes = false;
+  private int functionLevelPassThreads = 1;
+  private boolean skipUnchangedFunctions = false;
+  private PassProfile passProfile = null;
+
+  // The budget of the loops. Once it runs out, no more loop passes run.
+  private boolean hasLoopDeadline = false;
+  private long loopDeadline = 0;
+  private long loopHeapLimit = 0;
+  private boolean loopBudgetExhausted = false;
+  private final List<String> passesCutByBudget = Lists.newArrayList();
 
   private double progress = 0.0;
   private double progressStep = 0.0;
@@ -129,7 +144,7 @@ class PhaseOptimizer implements CompilerPass {
   void consume(List<PassFactory> factories) {
     Loop currentLoop = new Loop();
     boolean isCurrentLoopPopulated = false;
-    for (PassFactory factory : factories) {
+    for (PassFactory factory : fuseTraversalChecks(factories)) {
       if (factory.isOneTimePass()) {
         if (isCurrentLoopPopulated) {
           passes.add(currentLoop);
@@ -148,6 +163,40 @@ class PhaseOptimizer implements CompilerPass {
     }
   }
 
+  /**
+   * Replaces each run of adjacent checks that can share a traversal with a
+   * single pass that runs all of their callbacks in one traversal. The
+   * callbacks do not change the AST, so this gives the same result as running
+   * the checks one after the other. The list that the pass config built is
+   * left alone, so its passes can still be found by name.
+   */
+  private static List<PassFactory> fuseTraversalChecks(
+      List<PassFactory> factories) {
+    List<PassFactory> result = Lists.newArrayList();
+    List<TraversalCheckFactory> group = Lists.newArrayList();
+    for (PassFactory factory : factories) {
+      if (factory instanceof TraversalCheckFactory
+          && ((TraversalCheckFactory) factory).canShareTraversal()) {
+        group.add((TraversalCheckFactory) factory);
+      } else {
+        addTraversalChecks(result, group);
+        group = Lists.newArrayList();
+        result.add(factory);
+      }
+    }
+    addTraversalChecks(result, group);
+    return result;
+  }
+
+  private static void addTraversalChecks(List<PassFactory> factories,
+      List<TraversalCheckFactory> group) {
+    if (group.size() == 1) {
+      factories.add(group.get(0));
+    } else if (group.size() > 1) {
+      factories.add(new FusedChecksFactory(group));
+    }
+  }
+
   /**
    * Add the pass generated by the given factory to the compile sequence.
    * This pass will be run once.
@@ -181,6 +230,70 @@ class PhaseOptimizer implements CompilerPass {
     this.printAstHashcodes = printAstHashcodes;
   }
 
+  /**
+   * Sets the number of threads used to run function-local passes. With fewer
+   * than two, they run like any other pass.
+   */
+  void setFunctionLevelPassThreads(int functionLevelPassThreads) {
+    this.functionLevelPassThreads = functionLevelPassThreads;
+  }
+
+  /**
+   * Sets whether function-local passes in loops skip the top level functions
+   * that have not changed since they last ran over them.
+   */
+  void setSkipUnchangedFunctions(boolean skipUnchangedFunctions) {
+    this.skipUnchangedFunctions = skipUnchangedFunctions;
+  }
+
+  /**
+   * Sets the profile that orders the passes of loops, and that records the
+   * runs of those passes.
+   */
+  void setPassProfile(PassProfile passProfile) {
+    this.passProfile = passProfile;
+  }
+
+  /**
+   * Sets the time after which loops stop. A loop that is running when the
+   * time passes stops after its current pass, and later loops do not run.
+   *
+   * @param deadline A time as returned by {@link System#nanoTime()}.
+   */
+  void setLoopDeadline(long deadline) {
+    this.hasLoopDeadline = true;
+    this.loopDeadline = deadline;
+  }
+
+  /**
+   * Sets the number of bytes of heap in use above which loops stop, like
+   * they do at the deadline. Zero means no limit.
+   */
+  void setLoopHeapLimit(long loopHeapLimit) {
+    this.loopHeapLimit = loopHeapLimit;
+  }
+
+  /**
+   * Returns the passes of the loops that were stopped, or that did not run,
+   * because the budget of the loops ran out.
+   */
+  List<String> getPassesCutByBudget() {
+    return ImmutableList.copyOf(passesCutByBudget);
+  }
+
+  private boolean isLoopBudgetExhausted() {
+    if (!loopBudgetExhausted) {
+      if (hasLoopDeadline && System.nanoTime() - loopDeadline >= 0) {
+        loopBudgetExhausted = true;
+      } else if (loopHeapLimit > 0) {
+        Runtime runtime = Runtime.getRuntime();
+        loopBudgetExhausted =
+            runtime.totalMemory() - runtime.freeMemory() > loopHeapLimit;
+      }
+    }
+    return loopBudgetExhausted;
+  }
+
   /**
    * Run all the passes in the optimizer.
    */
@@ -204,8 +317,10 @@ class PhaseOptimizer implements CompilerPass {
 
   private void maybePrintAstHashcodes(String passName, Node root) {
     if (printAstHashcodes) {
+      // The structural hash is only recomputed for the functions that the
+      // pass changed, and the code around them.
       String hashCodeMsg = "AST hashCode after " + passName + ": " +
-          compiler.toSource(root).hashCode();
+          compiler.getSubtreeSummaries().getStructuralHash(root);
       System.err.println(hashCodeMsg);
       compiler.addToDebugLog(hashCodeMsg);
     }
@@ -239,6 +354,14 @@ class PhaseOptimizer implements CompilerPass {
 
     @Override
     public void process(Node externs, Node root) {
+      process(externs, root, null);
+    }
+
+    /**
+     * @param functionsToVisit The top level functions a function-local pass
+     *     runs over, or null for all of them.
+     */
+    void process(Node externs, Node root, Predicate<Node> functionsToVisit) {
       logger.fine(name);
       if (tracker != null) {
         tracker.recordPassStart(name, factory.isOneTimePass());
@@ -247,7 +370,30 @@ class PhaseOptimizer implements CompilerPass {
       // Delay the creation of the actual pass until *after* all previous passes
       // have been processed.
       // Some precondition checks rely on this, eg, in CoalesceVariableNames.
-      factory.create(compiler).process(externs, root);
+      if (functionsToVisit != null) {
+        new ParallelFunctionLevelPass(compiler, factory,
+            functionLevelPassThreads, functionsToVisit)
+            .process(externs, root);
+      } else if (functionLevelPassThreads > 1 && factory.isFunctionLocal()) {
+        new ParallelFunctionLevelPass(
+            compiler, factory, functionLevelPassThreads)
+            .process(externs, root);
+      } else {
+        CompilerPass pass = factory.create(compiler);
+        // Checks that share a traversal are timed one by one.
+        boolean timeChecks =
+            tracker != null && factory instanceof FusedChecksFactory;
+        if (timeChecks) {
+          ((CombinedCompilerPass) pass).setTimed(true);
+        }
+        pass.process(externs, root);
+        if (timeChecks) {
+          for (Map.Entry<String, Long> entry :
+               ((CombinedCompilerPass) pass).getCallbackRuntimes().entrySet()) {
+            tracker.recordNestedPass(entry.getKey(), entry.getValue());
+          }
+        }
+      }
       try {
         if (progressRange == null) {
           compiler.setProgress(-1, name);
@@ -266,6 +412,10 @@ class PhaseOptimizer implements CompilerPass {
         throw new RuntimeException("Sanity check failed for " + name, e);
       }
     }
+
+    boolean isFunctionLocal() {
+      return factory.isFunctionLocal();
+    }
   }
 
   /**
@@ -290,11 +440,18 @@ class PhaseOptimizer implements CompilerPass {
     @Override
     public void process(Node externs, Node root) {
       Preconditions.checkState(!loopMutex, "Nested loops are forbidden");
+      if (isLoopBudgetExhausted()) {
+        cutByBudget();
+        return;
+      }
       loopMutex = true;
       if (randomizeLoops) {
         randomizePasses();
       } else {
         optimizePasses();
+        if (passProfile != null) {
+          orderPassesByProfile();
+        }
       }
 
       compiler.addChangeHandler(recentChange);
@@ -303,25 +460,62 @@ class PhaseOptimizer implements CompilerPass {
       // Contains a pass iff it was run during the last inner loop.
       Set<NamedPass> runInPrevIter = new HashSet<NamedPass>();
       State s = State.RUN_PASSES_NOT_RUN_IN_PREV_ITER;
+      // Lets function-local passes skip the functions that did not change.
+      FunctionChangeTracker functionChanges =
+          skipUnchangedFunctions ? new FunctionChangeTracker(root) : null;
       boolean lastIterMadeChanges;
       int count = 0;
 
+      // Passes that have not changed code in a long time wait until the
+      // other passes have run.
+      Set<NamedPass> heldBack = Sets.newHashSet();
+      if (passProfile != null && !randomizeLoops) {
+        for (NamedPass pass : myPasses) {
+          if (passProfile.isUnproductive(pass.name)) {
+            heldBack.add(pass);
+          }
+        }
+      }
+
       try {
         while (true) {
           if (count++ > MAX_LOOPS) {
             compiler.throwInternalError(OPTIMIZE_LOOP_ERROR, null);
           }
           lastIterMadeChanges = false;
+          boolean heldBackPasses = !heldBack.isEmpty();
           for (NamedPass pass : myPasses) {
             recentChange.reset();
-            if ((s == State.RUN_PASSES_NOT_RUN_IN_PREV_ITER &&
+            if (heldBack.remove(pass)) {
+              // It runs in the next iteration that runs the passes not run
+              // in the previous one.
+              runInPrevIter.remove(pass);
+            } else if ((s == State.RUN_PASSES_NOT_RUN_IN_PREV_ITER &&
                 !runInPrevIter.contains(pass)) ||
                 (s == State.RUN_PASSES_THAT_CHANGED_STH_IN_PREV_ITER &&
                     madeChanges.contains(pass))) {
-              pass.process(externs, root);
+              long start = System.nanoTime();
+              if (functionChanges == null) {
+                pass.process(externs, root);
+              } else {
+                Predicate<Node> changedFunctions =
+                    functionChanges.startPass(pass.name);
+                pass.process(externs, root,
+                    pass.isFunctionLocal() ? changedFunctions : null);
+                if (recentChange.hasCodeChanged()) {
+                  functionChanges.endPass(root);
+                }
+              }
+              if (passProfile != null) {
+                passProfile.record(pass.name, recentChange.hasCodeChanged(),
+                    (System.nanoTime() - start) / 1000000);
+              }
               runInPrevIter.add(pass);
               if (hasHaltingErrors()) {
                 return;
+              } else if (isLoopBudgetExhausted()) {
+                cutByBudget();
+                return;
               } else if (recentChange.hasCodeChanged()) {
                 madeChanges.add(pass);
                 lastIterMadeChanges = true;
@@ -335,7 +529,7 @@ class PhaseOptimizer implements CompilerPass {
           if (s == State.RUN_PASSES_NOT_RUN_IN_PREV_ITER) {
             if (lastIterMadeChanges) {
               s = State.RUN_PASSES_THAT_CHANGED_STH_IN_PREV_ITER;
-            } else {
+            } else if (!heldBackPasses) {
               return;
             }
           } else if (!lastIterMadeChanges) {
@@ -348,11 +542,36 @@ class PhaseOptimizer implements CompilerPass {
       }
     }
 
+    private void cutByBudget() {
+      logger.fine("Optimization budget exhausted");
+      for (NamedPass pass : myPasses) {
+        passesCutByBudget.add(pass.name);
+      }
+    }
+
     /** Re-arrange the passes in a random order. */
     private void randomizePasses() {
       Collections.shuffle(myPasses);
     }
 
+    /**
+     * Re-arrange the passes by the rate at which the profile says they change
+     * code. This is deterministic for a given profile.
+     */
+    private void orderPassesByProfile() {
+      Map<String, NamedPass> byName = Maps.newHashMap();
+      List<String> names = Lists.newArrayList();
+      for (NamedPass pass : myPasses) {
+        byName.put(pass.name, pass);
+        names.add(pass.name);
+      }
+      passProfile.order(names);
+      myPasses.clear();
+      for (String name : names) {
+        myPasses.add(byName.get(name));
+      }
+    }
+
     /** Re-arrange the passes in an optimal order. */
     private void optimizePasses() {
       // It's important that this ordering is deterministic, so that
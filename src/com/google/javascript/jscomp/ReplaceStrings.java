@@ -26,7 +26,7 @@ import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
-import com.google.javascript.jscomp.NodeTraversal.AbstractPostOrderCallback;
+import com.google.javascript.jscomp.NodeTraversal.AbstractSubtreeTypePruningCallback;
 import com.google.javascript.rhino.IR;
 import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.Token;
@@ -47,7 +47,7 @@ import java.util.Set;
  *
  * Based in concept on the work by Jared Jacobs.
  */
-class ReplaceStrings extends AbstractPostOrderCallback
+class ReplaceStrings extends AbstractSubtreeTypePruningCallback
     implements CompilerPass {
   static final DiagnosticType BAD_REPLACEMENT_CONFIGURATION =
       DiagnosticType.warning(
@@ -136,6 +136,8 @@ class ReplaceStrings extends AbstractPostOrderCallback
       List<String> functionsToInspect,
       Set<String> blacklisted,
       VariableMap previousMappings) {
+    // Only calls and new expressions are replaced.
+    super(ImmutableSet.of(Token.CALL, Token.NEW));
     this.compiler = compiler;
     this.placeholderToken = placeholderToken.isEmpty()
         ? DEFAULT_PLACEHOLDER_TOKEN : placeholderToken;
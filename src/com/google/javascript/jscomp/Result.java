@@ -16,6 +16,9 @@
 
 package com.google.javascript.jscomp;
 
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -36,13 +39,20 @@ public class Result {
   public final String externExport;
   public final String idGeneratorMap;
 
+  /**
+   * The optimization passes that were stopped before reaching a fixed point,
+   * because the time or heap budget of the optimizations ran out.
+   */
+  public final List<String> passesCutByBudget;
+
   Result(JSError[] errors, JSError[] warnings, String debugLog,
          VariableMap variableMap, VariableMap propertyMap,
          VariableMap namedAnonFunctionMap,
          VariableMap stringMap,
          FunctionInformationMap functionInformationMap,
          SourceMap sourceMap, String externExport,
-         Map<String, Integer> cssNames, String idGeneratorMap) {
+         Map<String, Integer> cssNames, String idGeneratorMap,
+         List<String> passesCutByBudget) {
     this.success = errors.length == 0;
     this.errors = errors;
     this.warnings = warnings;
@@ -56,6 +66,7 @@ public class Result {
     this.externExport = externExport;
     this.cssNames = cssNames;
     this.idGeneratorMap = idGeneratorMap;
+    this.passesCutByBudget = passesCutByBudget;
   }
 
   // Visible for testing only.
@@ -66,6 +77,6 @@ public class Result {
                 SourceMap sourceMap, String externExport) {
     this(errors, warnings, debugLog, variableMap, propertyMap,
          namedAnonFunctionMap, null, functionInformationMap, sourceMap,
-         externExport, null, null);
+         externExport, null, null, ImmutableList.<String>of());
   }
 }
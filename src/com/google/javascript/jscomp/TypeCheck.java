@@ -830,7 +830,8 @@ public class TypeCheck implements NodeTraversal.Callback, CompilerPass {
         }
         if (n.isObjectLit()) {
           JSType typ = getJSType(n);
-          for (Node key : n.children()) {
+          for (Node key = n.getFirstChild(); key != null;
+               key = key.getNext()) {
             visitObjLitKey(t, key, n, typ);
           }
         }
@@ -1528,7 +1529,7 @@ public class TypeCheck implements NodeTraversal.Callback, CompilerPass {
     // on the NAME node. We probably want to wait for the parser
     // merge to fix this.
     JSDocInfo varInfo = n.hasOneChild() ? n.getJSDocInfo() : null;
-    for (Node name : n.children()) {
+    for (Node name = n.getFirstChild(); name != null; name = name.getNext()) {
       Node value = name.getFirstChild();
       // A null var would indicate a bug in the scope creation logic.
       Var var = t.getScope().getVar(name.getString());
@@ -16,10 +16,15 @@
 
 package com.google.javascript.jscomp.parsing;
 
+import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 /**
  * Configuration for the AST factory. Should be shared across AST creation
@@ -66,6 +71,14 @@ public class Config {
    */
   final boolean acceptConstKeyword;
 
+  /**
+   * The names of variables, properties, and labels seen by the parse. The
+   * same name in any file of the compilation is one String, so the ASTs hold
+   * a single copy of each name, and the passes that key maps by names mostly
+   * compare strings by reference.
+   */
+  final Interner<String> names = Interners.newStrongInterner();
+
   /**
    * Annotation names.
    */
@@ -99,4 +112,20 @@ public class Config {
     }
     return annotationBuilder.build();
   }
+
+  /**
+   * Describes every setting that affects the parse, in a stable order, so
+   * that two configs with the same description parse code the same way.
+   */
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+        .add("languageMode", languageMode)
+        .add("isIdeMode", isIdeMode)
+        .add("acceptConstKeyword", acceptConstKeyword)
+        .add("annotationNames",
+            new TreeMap<String, Annotation>(annotationNames))
+        .add("suppressionNames", new TreeSet<String>(suppressionNames))
+        .toString();
+  }
 }
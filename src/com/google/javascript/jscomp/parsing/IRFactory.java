@@ -861,7 +861,8 @@ class IRFactory {
 
     @Override
     Node processLabel(Label labelNode) {
-      return newStringNode(Token.LABEL_NAME, labelNode.getName());
+      return newStringNode(
+          Token.LABEL_NAME, config.names.intern(labelNode.getName()));
     }
 
     @Override
@@ -895,16 +896,17 @@ class IRFactory {
     }
 
     Node processName(Name nameNode, boolean asString) {
+      String name = config.names.intern(nameNode.getIdentifier());
       if (asString) {
-        return newStringNode(Token.STRING, nameNode.getIdentifier());
+        return newStringNode(Token.STRING, name);
       } else {
-        if (isReservedKeyword(nameNode.getIdentifier())) {
+        if (isReservedKeyword(name)) {
           errorReporter.error(
             "identifier is a reserved word",
             sourceName,
             nameNode.getLineno(), "", 0);
         }
-        return newStringNode(Token.NAME, nameNode.getIdentifier());
+        return newStringNode(Token.NAME, name);
       }
     }
 
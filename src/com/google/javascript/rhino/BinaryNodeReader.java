@@ -0,0 +1,375 @@
+/*
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Rhino code, released
+ * May 6, 1999.
+ *
+ * The Initial Developer of the Original Code is
+ * Netscape Communications Corporation.
+ * Portions created by the Initial Developer are Copyright (C) 1997-1999
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *   Google Inc.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU General Public License Version 2 or later (the "GPL"), in which
+ * case the provisions of the GPL are applicable instead of those above. If
+ * you wish to allow use of your version of this file only under the terms of
+ * the GPL and not to allow others to use your version of this file under the
+ * MPL, indicate your decision by deleting the provisions above and replacing
+ * them with the notice and other provisions required by the GPL. If you do
+ * not delete the provisions above, a recipient may use your version of this
+ * file under either the MPL or the GPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+
+package com.google.javascript.rhino;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.javascript.rhino.jstype.JSType;
+import com.google.javascript.rhino.jstype.StaticSourceFile;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads ASTs written by a {@link BinaryNodeWriter}. The trees must be read
+ * in the order they were written.
+ *
+ * The nodes read refer to external objects, such as types, only once the
+ * reader has been given the external objects of the writer (see
+ * {@link #setExternalObjects}). The reader for a single source file knows
+ * its only external object from the start.
+ *
+ */
+public class BinaryNodeReader {
+
+  // What a reference to an external object is for.
+  private static final int TYPE = 0;
+  private static final int SOURCE_FILE = 1;
+  private static final int ASSOCIATED_NODE = 2;
+
+  private final DataInputStream in;
+
+  private final List<String> strings = Lists.newArrayList();
+  private final List<JSDocInfo> jsDocs = Lists.newArrayList();
+
+  // The nodes of the trees read so far, numbered as the writer did.
+  private final List<Node> nodes = Lists.newArrayList();
+
+  // The external objects, or null if they are not known yet, and the
+  // references to them that have not been resolved.
+  private List<?> externalObjects = null;
+  private final List<Reference> references = Lists.newArrayList();
+
+  // The JSDoc of the tree being read that is associated with one of its
+  // nodes, and the indices of those nodes.
+  private final List<JSDocInfo> associatedJsDocs = Lists.newArrayList();
+  private final List<Integer> associatedIndices = Lists.newArrayList();
+
+  /**
+   * Creates a reader for trees written by a writer that was not created for
+   * a single source file.
+   */
+  public BinaryNodeReader(InputStream in) {
+    this.in = new DataInputStream(in);
+  }
+
+  /**
+   * @param sourceFile The source file that the nodes read refer to, in place
+   *     of the one they were written with.
+   */
+  public BinaryNodeReader(InputStream in, StaticSourceFile sourceFile) {
+    this(in);
+    this.externalObjects = ImmutableList.of(sourceFile);
+  }
+
+  /** Reads the next tree. */
+  public Node readTree() throws IOException {
+    try {
+      Node root = readNode(true);
+      // JSDoc may be associated with a node that comes after it.
+      for (int i = 0; i < associatedJsDocs.size(); i++) {
+        associatedJsDocs.get(i).setAssociatedNode(
+            getNode(associatedIndices.get(i)));
+      }
+      if (externalObjects != null) {
+        resolveReferences();
+      }
+      return root;
+    } finally {
+      associatedJsDocs.clear();
+      associatedIndices.clear();
+    }
+  }
+
+  /**
+   * Gives the reader the external objects of the writer, in the order of
+   * {@link BinaryNodeWriter#getExternalObjects}. The trees already read are
+   * updated to refer to them.
+   */
+  public void setExternalObjects(List<?> objects) throws IOException {
+    Preconditions.checkState(externalObjects == null,
+        "The external objects are already known");
+    externalObjects = ImmutableList.copyOf(objects);
+    resolveReferences();
+  }
+
+  /**
+   * Returns the node read for the node that had the given index in the
+   * writer (see {@link BinaryNodeWriter#getNodeIndex}).
+   */
+  public Node getNode(int index) throws IOException {
+    if (index < 0 || index >= nodes.size()) {
+      throw new IOException("Invalid node reference: " + index);
+    }
+    return nodes.get(index);
+  }
+
+  /**
+   * Returns the JSDoc read for the JSDoc that had the given index in the
+   * writer (see {@link BinaryNodeWriter#getJSDocIndex}).
+   */
+  public JSDocInfo getJSDocInfo(int index) throws IOException {
+    if (index < 0 || index >= jsDocs.size() || jsDocs.get(index) == null) {
+      throw new IOException("Invalid JSDoc reference: " + index);
+    }
+    return jsDocs.get(index);
+  }
+
+  private void resolveReferences() throws IOException {
+    for (Reference ref : references) {
+      if (ref.index >= externalObjects.size()) {
+        throw new IOException("Invalid external object: " + ref.index);
+      }
+      Object value = externalObjects.get(ref.index);
+      try {
+        switch (ref.kind) {
+          case TYPE:
+            ((Node) ref.from).setJSType((JSType) value);
+            break;
+          case SOURCE_FILE:
+            ((Node) ref.from).setStaticSourceFile((StaticSourceFile) value);
+            break;
+          case ASSOCIATED_NODE:
+            ((JSDocInfo) ref.from).setAssociatedNode((Node) value);
+            break;
+        }
+      } catch (ClassCastException e) {
+        throw new IOException("Invalid external object: " + ref.index, e);
+      }
+    }
+    references.clear();
+  }
+
+  private Node readNode(boolean inTree) throws IOException {
+    int header = readVarInt();
+    int type = header >>> BinaryNodeWriter.HEADER_BITS;
+    int sourcePosition = readVarInt() - 1;
+    int typeIndex = (header & BinaryNodeWriter.TYPED_FLAG) != 0
+        ? readVarInt() : -1;
+
+    Node n;
+    switch (header & ((1 << BinaryNodeWriter.KIND_BITS) - 1)) {
+      case BinaryNodeWriter.KIND_STRING:
+        n = Node.newString(type, readString());
+        break;
+      case BinaryNodeWriter.KIND_NUMBER:
+        n = Node.newNumber(in.readDouble());
+        break;
+      case BinaryNodeWriter.KIND_SMALL_NUMBER:
+        n = Node.newNumber(readVarInt());
+        break;
+      default:
+        n = new Node(type);
+        break;
+    }
+    n.setSourceEncodedPosition(sourcePosition);
+    if (typeIndex >= 0) {
+      references.add(new Reference(n, TYPE, typeIndex));
+    }
+    if (inTree) {
+      nodes.add(n);
+    }
+
+    int propCount = readVarInt();
+    for (int i = 0; i < propCount; i++) {
+      readProp(n, readVarInt());
+    }
+
+    int childCount = readVarInt();
+    for (int i = 0; i < childCount; i++) {
+      n.addChildToBack(readNode(inTree));
+    }
+    return n;
+  }
+
+  private void readProp(Node n, int prop) throws IOException {
+    switch (prop) {
+      case Node.JSDOC_INFO_PROP:
+        n.setJSDocInfo(readJSDocInfo());
+        break;
+      case Node.ORIGINALNAME_PROP:
+        n.putProp(prop, readString());
+        break;
+      case Node.DIRECTIVES:
+        n.setDirectives(readStringSet());
+        break;
+      case Node.INPUT_ID:
+        n.setInputId(new InputId(readString()));
+        break;
+      case Node.STATIC_SOURCE_FILE:
+        references.add(new Reference(n, SOURCE_FILE, readVarInt()));
+        break;
+      default:
+        n.putIntProp(prop, readSignedVarInt());
+        break;
+    }
+  }
+
+  private JSDocInfo readJSDocInfo() throws IOException {
+    int index = readVarInt();
+    if (index < jsDocs.size()) {
+      return jsDocs.get(index);
+    }
+    if (index != jsDocs.size()) {
+      throw new IOException("Invalid JSDoc reference: " + index);
+    }
+    // Reserve the index before reading, as the writer did.
+    jsDocs.add(null);
+    JSDocInfo info = JSDocInfo.readFrom(this);
+    jsDocs.set(index, info);
+    return info;
+  }
+
+  int readVarInt() throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 35; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed variable length number");
+  }
+
+  int readSignedVarInt() throws IOException {
+    int value = readVarInt();
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  boolean readBoolean() throws IOException {
+    return in.readBoolean();
+  }
+
+  String readString() throws IOException {
+    int index = readVarInt();
+    if (index == 0) {
+      return null;
+    } else if (index > 1) {
+      if (index - 2 >= strings.size()) {
+        throw new IOException("Invalid string reference: " + index);
+      }
+      return strings.get(index - 2);
+    }
+
+    int length = readVarInt();
+    StringBuilder sb = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      sb.append((char) readVarInt());
+    }
+    String value = sb.toString();
+    strings.add(value);
+    return value;
+  }
+
+  List<String> readStringList() throws IOException {
+    int size = readVarInt() - 1;
+    if (size < 0) {
+      return null;
+    }
+    List<String> values = Lists.newArrayListWithCapacity(size);
+    for (int i = 0; i < size; i++) {
+      values.add(readString());
+    }
+    return values;
+  }
+
+  Set<String> readStringSet() throws IOException {
+    List<String> values = readStringList();
+    return values == null ? null : Sets.newHashSet(values);
+  }
+
+  JSTypeExpression readTypeExpression() throws IOException {
+    if (!readBoolean()) {
+      return null;
+    }
+    String sourceName = readString();
+    return new JSTypeExpression(readNode(false), sourceName);
+  }
+
+  List<JSTypeExpression> readTypeExpressions() throws IOException {
+    int size = readVarInt() - 1;
+    if (size < 0) {
+      return null;
+    }
+    List<JSTypeExpression> exprs = Lists.newArrayListWithCapacity(size);
+    for (int i = 0; i < size; i++) {
+      exprs.add(readTypeExpression());
+    }
+    return exprs;
+  }
+
+  /**
+   * Reads a reference written by {@link BinaryNodeWriter#writeNodeReference},
+   * and makes the node it refers to the associated node of the JSDoc once
+   * the whole tree has been read.
+   */
+  void readAssociatedNode(JSDocInfo info) throws IOException {
+    int value = readVarInt();
+    if (value == 0) {
+      return;
+    }
+    int index = (value - 1) >>> 1;
+    if ((value & 1) != 0) {
+      associatedJsDocs.add(info);
+      associatedIndices.add(index);
+    } else {
+      references.add(new Reference(info, ASSOCIATED_NODE, index));
+    }
+  }
+
+  /** A reference to an external object, from a node or JSDoc. */
+  private static class Reference {
+    final Object from;
+    final int kind;
+    final int index;
+
+    Reference(Object from, int kind, int index) {
+      this.from = from;
+      this.kind = kind;
+      this.index = index;
+    }
+  }
+}
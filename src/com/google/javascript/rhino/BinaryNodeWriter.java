@@ -0,0 +1,379 @@
+/*
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Rhino code, released
+ * May 6, 1999.
+ *
+ * The Initial Developer of the Original Code is
+ * Netscape Communications Corporation.
+ * Portions created by the Initial Developer are Copyright (C) 1997-1999
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *   Google Inc.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU General Public License Version 2 or later (the "GPL"), in which
+ * case the provisions of the GPL are applicable instead of those above. If
+ * you wish to allow use of your version of this file only under the terms of
+ * the GPL and not to allow others to use your version of this file under the
+ * MPL, indicate your decision by deleting the provisions above and replacing
+ * them with the notice and other provisions required by the GPL. If you do
+ * not delete the provisions above, a recipient may use your version of this
+ * file under either the MPL or the GPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+
+package com.google.javascript.rhino;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.javascript.rhino.jstype.JSType;
+import com.google.javascript.rhino.jstype.StaticSourceFile;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes ASTs in a compact binary format, to be read back by a
+ * {@link BinaryNodeReader}. It is much smaller and faster than Java
+ * serialization of the same trees: integers are written as variable length
+ * numbers, and each string and {@link JSDocInfo} is written only once per
+ * stream and referenced by index after that.
+ *
+ * Objects the format has no encoding for, such as types and source files,
+ * are written as references into a table of external objects (see
+ * {@link #getExternalObjects}), which the caller stores in some other way
+ * and gives to the reader. A writer created for a single source file
+ * supports no external objects but that file: trees that carry types are
+ * rejected with an {@link IllegalArgumentException}. JSDoc that keeps its
+ * documentation is always rejected.
+ *
+ */
+public class BinaryNodeWriter {
+
+  /**
+   * The version of the format. Readers should not be given data written
+   * with a different version.
+   */
+  public static final int FORMAT_VERSION = 2;
+
+  // How the value of a node is stored, in the low bits of its header.
+  static final int KIND_PLAIN = 0;
+  static final int KIND_STRING = 1;
+  static final int KIND_NUMBER = 2;
+  static final int KIND_SMALL_NUMBER = 3;
+  static final int KIND_BITS = 2;
+
+  // Set in the header of a node that has a type.
+  static final int TYPED_FLAG = 1 << KIND_BITS;
+  static final int HEADER_BITS = KIND_BITS + 1;
+
+  private final DataOutputStream out;
+
+  // The only source file the nodes may refer to, or null if they may refer
+  // to any.
+  private final StaticSourceFile sourceFile;
+
+  private final Map<String, Integer> strings = Maps.newHashMap();
+  private final Map<JSDocInfo, Integer> jsDocs =
+      new IdentityHashMap<JSDocInfo, Integer>();
+
+  // The index of each node of the trees written so far, numbered in preorder
+  // across all the trees.
+  private final Map<Node, Integer> nodes =
+      new IdentityHashMap<Node, Integer>();
+
+  private final Map<Object, Integer> externalObjectIndex =
+      new IdentityHashMap<Object, Integer>();
+  private final List<Object> externalObjects = Lists.newArrayList();
+
+  /**
+   * Creates a writer for trees that may refer to any source file and carry
+   * types.
+   */
+  public BinaryNodeWriter(OutputStream out) {
+    this.out = new DataOutputStream(out);
+    this.sourceFile = null;
+  }
+
+  /**
+   * @param sourceFile The source file of the trees written. Nodes may only
+   *     refer to this source file, which the reader replaces with its own.
+   */
+  public BinaryNodeWriter(OutputStream out, StaticSourceFile sourceFile) {
+    Preconditions.checkNotNull(sourceFile);
+    this.out = new DataOutputStream(out);
+    this.sourceFile = sourceFile;
+    externalObjectIndex.put(sourceFile, 0);
+    externalObjects.add(sourceFile);
+  }
+
+  /**
+   * Writes a tree. Strings and JSDoc already written to this stream by an
+   * earlier call are not written again.
+   */
+  public void writeTree(Node root) throws IOException {
+    indexTree(root);
+    writeNode(root);
+  }
+
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  /**
+   * Returns the objects that the trees written so far refer to, and that the
+   * format has no encoding for, in the order of their indices. The reader
+   * must be given the same objects, or equivalent ones.
+   */
+  public List<Object> getExternalObjects() {
+    return ImmutableList.copyOf(externalObjects);
+  }
+
+  /**
+   * Returns the index of a node of the trees written so far, which the
+   * reader can map back to the node it read, or -1 if the node was not
+   * written.
+   */
+  public int getNodeIndex(Node n) {
+    Integer index = nodes.get(n);
+    return index == null ? -1 : index;
+  }
+
+  /**
+   * Returns the index of JSDoc written so far, which the reader can map back
+   * to the JSDoc it read, or -1 if the JSDoc was not written.
+   */
+  public int getJSDocIndex(JSDocInfo info) {
+    Integer index = jsDocs.get(info);
+    return index == null ? -1 : index;
+  }
+
+  private void indexTree(Node n) {
+    nodes.put(n, nodes.size());
+    for (Node c = n.getFirstChild(); c != null; c = c.getNext()) {
+      indexTree(c);
+    }
+  }
+
+  private void writeNode(Node n) throws IOException {
+    JSType type = n.getJSType();
+    if (type != null && sourceFile != null) {
+      throw new IllegalArgumentException("Typed nodes are not supported");
+    }
+
+    int kind = KIND_PLAIN;
+    if (n instanceof Node.NumberNode) {
+      kind = isSmallNumber(n.getDouble()) ? KIND_SMALL_NUMBER : KIND_NUMBER;
+    } else if (n instanceof Node.StringNode) {
+      kind = KIND_STRING;
+    }
+    writeVarInt((n.getType() << HEADER_BITS)
+        | (type != null ? TYPED_FLAG : 0) | kind);
+    writeVarInt(n.getSourcePosition() + 1);
+    if (type != null) {
+      writeVarInt(getExternalObjectIndex(type, null));
+    }
+    switch (kind) {
+      case KIND_STRING:
+        writeString(n.getString());
+        break;
+      case KIND_NUMBER:
+        out.writeDouble(n.getDouble());
+        break;
+      case KIND_SMALL_NUMBER:
+        writeVarInt((int) n.getDouble());
+        break;
+    }
+
+    int[] props = n.getSortedPropTypes();
+    writeVarInt(props.length);
+    for (int prop : props) {
+      writeVarInt(prop);
+      writeProp(n, prop);
+    }
+
+    writeVarInt(n.getChildCount());
+    for (Node c = n.getFirstChild(); c != null; c = c.getNext()) {
+      writeNode(c);
+    }
+  }
+
+  private static boolean isSmallNumber(double value) {
+    // Negative zero is excluded, since it would be read back as zero.
+    return value >= 0 && value <= Integer.MAX_VALUE
+        && value == Math.floor(value) && 1 / value > 0;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void writeProp(Node n, int prop) throws IOException {
+    switch (prop) {
+      case Node.JSDOC_INFO_PROP:
+        writeJSDocInfo(n.getJSDocInfo());
+        break;
+      case Node.ORIGINALNAME_PROP:
+        writeString((String) n.getProp(prop));
+        break;
+      case Node.DIRECTIVES:
+        writeStrings((Set<String>) n.getProp(prop));
+        break;
+      case Node.INPUT_ID:
+        writeString(((InputId) n.getProp(prop)).getIdName());
+        break;
+      case Node.STATIC_SOURCE_FILE:
+        writeVarInt(getExternalObjectIndex(n.getProp(prop),
+            "Nodes of other source files are not supported"));
+        break;
+      default:
+        writeSignedVarInt(n.getIntProp(prop));
+        break;
+    }
+  }
+
+  private void writeJSDocInfo(JSDocInfo info) throws IOException {
+    Integer index = jsDocs.get(info);
+    if (index != null) {
+      writeVarInt(index);
+      return;
+    }
+    writeVarInt(jsDocs.size());
+    jsDocs.put(info, jsDocs.size());
+    info.writeTo(this);
+  }
+
+  /**
+   * Returns the index of an external object, adding it to the table if it is
+   * not there yet.
+   * @param unsupported The error to reject the object with if the writer is
+   *     for a single source file and the object is not that file.
+   */
+  private int getExternalObjectIndex(Object value, String unsupported) {
+    Integer index = externalObjectIndex.get(value);
+    if (index != null) {
+      return index;
+    }
+    if (sourceFile != null) {
+      throw new IllegalArgumentException(unsupported);
+    }
+    externalObjectIndex.put(value, externalObjects.size());
+    externalObjects.add(value);
+    return externalObjects.size() - 1;
+  }
+
+  /** Writes an unsigned int in 7 bit groups, low bits first. */
+  void writeVarInt(int value) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      out.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  /** Writes a signed int, so that numbers close to zero are short. */
+  void writeSignedVarInt(int value) throws IOException {
+    writeVarInt((value << 1) ^ (value >> 31));
+  }
+
+  void writeBoolean(boolean value) throws IOException {
+    out.writeBoolean(value);
+  }
+
+  /**
+   * Writes a string, which may be null. The characters are written as they
+   * are, so strings that are not valid UTF-16 survive as well.
+   */
+  void writeString(String value) throws IOException {
+    if (value == null) {
+      writeVarInt(0);
+      return;
+    }
+    Integer index = strings.get(value);
+    if (index != null) {
+      writeVarInt(index + 2);
+      return;
+    }
+    strings.put(value, strings.size());
+    writeVarInt(1);
+    writeVarInt(value.length());
+    for (int i = 0; i < value.length(); i++) {
+      writeVarInt(value.charAt(i));
+    }
+  }
+
+  /** Writes a collection of strings, which may be null. */
+  void writeStrings(Collection<String> values) throws IOException {
+    if (values == null) {
+      writeVarInt(0);
+      return;
+    }
+    writeVarInt(values.size() + 1);
+    for (String value : values) {
+      writeString(value);
+    }
+  }
+
+  /** Writes a type expression, which may be null. */
+  void writeTypeExpression(JSTypeExpression expr) throws IOException {
+    if (expr == null) {
+      writeBoolean(false);
+      return;
+    }
+    writeBoolean(true);
+    writeString(expr.getSourceName());
+    writeNode(expr.getRoot());
+  }
+
+  /** Writes a list of type expressions, which may be null. */
+  void writeTypeExpressions(List<JSTypeExpression> exprs) throws IOException {
+    if (exprs == null) {
+      writeVarInt(0);
+      return;
+    }
+    writeVarInt(exprs.size() + 1);
+    for (JSTypeExpression expr : exprs) {
+      writeTypeExpression(expr);
+    }
+  }
+
+  /**
+   * Writes a reference to a node, which may be null. A node of the trees
+   * written so far, or of the tree being written, is referred to by its
+   * index; any other node becomes an external object.
+   */
+  void writeNodeReference(Node n) throws IOException {
+    if (n == null) {
+      writeVarInt(0);
+      return;
+    }
+    Integer index = nodes.get(n);
+    if (index != null) {
+      writeVarInt((index << 1) + 1);
+    } else {
+      int objectIndex = getExternalObjectIndex(n,
+          "References to nodes outside of the tree are not supported");
+      writeVarInt((objectIndex << 1) + 2);
+    }
+  }
+}
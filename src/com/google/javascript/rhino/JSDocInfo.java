@@ -45,6 +45,7 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Collection;
 import java.util.Collections;
@@ -1592,4 +1593,93 @@ public class JSDocInfo implements Serializable {
   void setOriginalCommentPosition(int position) {
     originalCommentPosition = position;
   }
+
+  /**
+   * Writes this JSDoc for {@link BinaryNodeWriter}. The documentation is not
+   * written, so JSDoc that keeps it is rejected.
+   */
+  void writeTo(BinaryNodeWriter out) throws IOException {
+    if (includeDocumentation || documentation != null) {
+      throw new IllegalArgumentException(
+          "JSDoc with documentation is not supported");
+    }
+    out.writeVarInt(bitset);
+    out.writeVarInt(visibility == null ? 0 : visibility.ordinal() + 1);
+    out.writeSignedVarInt(originalCommentPosition);
+    out.writeTypeExpression(type);
+    out.writeTypeExpression(thisType);
+    out.writeNodeReference(associatedNode);
+
+    out.writeBoolean(info != null);
+    if (info != null) {
+      out.writeTypeExpression(info.baseType);
+      out.writeTypeExpressions(info.extendedInterfaces);
+      out.writeTypeExpressions(info.implementedInterfaces);
+      if (info.parameters == null) {
+        out.writeVarInt(0);
+      } else {
+        out.writeVarInt(info.parameters.size() + 1);
+        for (Map.Entry<String, JSTypeExpression> param :
+                 info.parameters.entrySet()) {
+          out.writeString(param.getKey());
+          out.writeTypeExpression(param.getValue());
+        }
+      }
+      out.writeTypeExpressions(info.thrownTypes);
+      out.writeStrings(info.templateTypeNames);
+      out.writeStrings(info.classTemplateTypeNames);
+      out.writeString(info.description);
+      out.writeString(info.meaning);
+      out.writeString(info.deprecated);
+      out.writeString(info.license);
+      out.writeStrings(info.suppressions);
+      out.writeStrings(info.modifies);
+      out.writeString(info.lendsName);
+      out.writeBoolean(info.ngInject);
+    }
+  }
+
+  /** Reads JSDoc written by {@link #writeTo}. */
+  static JSDocInfo readFrom(BinaryNodeReader in) throws IOException {
+    JSDocInfo result = new JSDocInfo();
+    result.bitset = in.readVarInt();
+    int visibility = in.readVarInt();
+    result.visibility =
+        visibility == 0 ? null : Visibility.values()[visibility - 1];
+    result.originalCommentPosition = in.readSignedVarInt();
+    result.type = in.readTypeExpression();
+    result.thisType = in.readTypeExpression();
+    in.readAssociatedNode(result);
+
+    if (in.readBoolean()) {
+      LazilyInitializedInfo info = new LazilyInitializedInfo();
+      info.baseType = in.readTypeExpression();
+      info.extendedInterfaces = in.readTypeExpressions();
+      info.implementedInterfaces = in.readTypeExpressions();
+      int paramCount = in.readVarInt() - 1;
+      if (paramCount >= 0) {
+        info.parameters = new LinkedHashMap<String, JSTypeExpression>();
+        for (int i = 0; i < paramCount; i++) {
+          info.parameters.put(in.readString(), in.readTypeExpression());
+        }
+      }
+      info.thrownTypes = in.readTypeExpressions();
+      info.templateTypeNames = copyOf(in.readStringList());
+      info.classTemplateTypeNames = copyOf(in.readStringList());
+      info.description = in.readString();
+      info.meaning = in.readString();
+      info.deprecated = in.readString();
+      info.license = in.readString();
+      info.suppressions = in.readStringSet();
+      info.modifies = in.readStringSet();
+      info.lendsName = in.readString();
+      info.ngInject = in.readBoolean();
+      result.info = info;
+    }
+    return result;
+  }
+
+  private static ImmutableList<String> copyOf(List<String> values) {
+    return values == null ? null : ImmutableList.copyOf(values);
+  }
 }
@@ -120,4 +120,9 @@ public final class JSTypeExpression implements Serializable {
   public Node getRoot() {
     return root;
   }
+
+  /** @return The name of the source file of this type expression. */
+  String getSourceName() {
+    return sourceName;
+  }
 }
@@ -104,6 +104,28 @@ public class Node implements Cloneable, Serializable {
                                   // have been inferred.
       LAST_PROP          = 55;
 
+  // The props that are booleans, and can be kept in Node#propFlags.
+  private static final long FLAG_PROPS =
+      1L << VAR_ARGS_NAME | 1L << QUOTED_PROP | 1L << OPT_ARG_NAME
+      | 1L << SYNTHETIC_BLOCK_PROP | 1L << EMPTY_BLOCK
+      | 1L << IS_CONSTANT_NAME | 1L << IS_NAMESPACE | 1L << IS_DISPATCHER
+      | 1L << DIRECT_EVAL | 1L << FREE_CALL | 1L << SLASH_V
+      | 1L << INFERRED_FUNCTION;
+
+  private static final int FIRST_FLAG_PROP = VAR_ARGS_NAME;
+
+  // The bit of Node#propFlags that marks a changed function; see
+  // isChangedFunction. It is above the bits of the flag props.
+  private static final int CHANGED_FUNCTION_FLAG = 1 << 31;
+
+  // The bit of Node#propFlags that marks a function or script whose summary
+  // in a SubtreeSummaries is up to date; see hasCurrentSummary.
+  private static final int CURRENT_SUMMARY_FLAG = 1 << 30;
+
+  // The bits of Node#propFlags that are not flag props.
+  private static final int NON_PROP_FLAGS =
+      CHANGED_FUNCTION_FLAG | CURRENT_SUMMARY_FLAG;
+
   public static final int   // flags for INCRDECR_PROP
       DECR_FLAG = 0x1,
       POST_FLAG = 0x2;
@@ -139,7 +161,7 @@ public class Node implements Cloneable, Serializable {
       }
   }
 
-  private static class NumberNode extends Node {
+  static class NumberNode extends Node {
 
     private static final long serialVersionUID = 1L;
 
@@ -161,6 +183,13 @@ public class Node implements Cloneable, Serializable {
     @Override
     public void setDouble(double d) {
       this.number = d;
+      reportChange();
+    }
+
+    @Override
+    int getValueHash() {
+      long bits = Double.doubleToLongBits(number);
+      return (int) (bits ^ (bits >>> 32));
     }
 
     @Override
@@ -180,7 +209,7 @@ public class Node implements Cloneable, Serializable {
     private double number;
   }
 
-  private static class StringNode extends Node {
+  static class StringNode extends Node {
 
     private static final long serialVersionUID = 1L;
 
@@ -219,6 +248,12 @@ public class Node implements Cloneable, Serializable {
         throw new IllegalArgumentException("StringNode: str is null");
       }
       this.str = str;
+      reportChange();
+    }
+
+    @Override
+    int getValueHash() {
+      return str.hashCode();
     }
 
     @Override
@@ -522,6 +557,7 @@ public class Node implements Cloneable, Serializable {
 
   public void setType(int type) {
     this.type = type;
+    reportChange();
   }
 
   public boolean hasChildren() {
@@ -588,6 +624,7 @@ public class Node implements Cloneable, Serializable {
   public void addChildToFront(Node child) {
     Preconditions.checkArgument(child.parent == null);
     Preconditions.checkArgument(child.next == null);
+    reportChange();
     child.parent = this;
     child.next = first;
     first = child;
@@ -599,6 +636,7 @@ public class Node implements Cloneable, Serializable {
   public void addChildToBack(Node child) {
     Preconditions.checkArgument(child.parent == null);
     Preconditions.checkArgument(child.next == null);
+    reportChange();
     child.parent = this;
     child.next = null;
     if (last == null) {
@@ -610,6 +648,7 @@ public class Node implements Cloneable, Serializable {
   }
 
   public void addChildrenToFront(Node children) {
+    reportChange();
     for (Node child = children; child != null; child = child.next) {
       Preconditions.checkArgument(child.parent == null);
       child.parent = this;
@@ -637,6 +676,7 @@ public class Node implements Cloneable, Serializable {
     Preconditions.checkArgument(newChild.parent == null,
         "The new child node already has a parent.");
     if (first == node) {
+      reportChange();
       newChild.parent = this;
       newChild.next = first;
       first = newChild;
@@ -660,6 +700,7 @@ public class Node implements Cloneable, Serializable {
    */
   public void addChildrenAfter(Node children, Node node) {
     Preconditions.checkArgument(node == null || node.parent == this);
+    reportChange();
     for (Node child = children; child != null; child = child.next) {
       Preconditions.checkArgument(child.parent == null);
       child.parent = this;
@@ -688,6 +729,7 @@ public class Node implements Cloneable, Serializable {
    * Detach a child from its parent and siblings.
    */
   public void removeChild(Node child) {
+    reportChange();
     Node prev = getChildBefore(child);
     if (prev == null)
         first = first.next;
@@ -709,6 +751,7 @@ public class Node implements Cloneable, Serializable {
 
     // Copy over important information.
     newChild.copyInformationFrom(child);
+    reportChange();
 
     newChild.next = child.next;
     newChild.parent = this;
@@ -735,6 +778,7 @@ public class Node implements Cloneable, Serializable {
 
     // Copy over important information.
     newChild.copyInformationFrom(prevChild);
+    reportChange();
 
     Node child = prevChild.next;
     newChild.next = child.next;
@@ -748,6 +792,9 @@ public class Node implements Cloneable, Serializable {
 
   @VisibleForTesting
   PropListItem lookupProperty(int propType) {
+    if ((propFlags & flagBit(propType)) != 0) {
+      return new IntPropListItem(propType, 1, null);
+    }
     PropListItem x = propListHead;
     while (x != null && propType != x.getType()) {
       x = x.getNext();
@@ -755,6 +802,22 @@ public class Node implements Cloneable, Serializable {
     return x;
   }
 
+  /**
+   * @return The bit of {@link #propFlags} that holds the given prop, or 0 if
+   *     the prop is not a flag.
+   */
+  private static int flagBit(int propType) {
+    if (propType < FIRST_FLAG_PROP || propType > LAST_PROP
+        || (FLAG_PROPS & (1L << propType)) == 0) {
+      return 0;
+    }
+    return 1 << (propType - FIRST_FLAG_PROP);
+  }
+
+  private boolean hasProps() {
+    return propListHead != null || (propFlags & ~NON_PROP_FLAGS) != 0;
+  }
+
   /**
    * Clone the properties from the provided node without copying
    * the property object.  The receiving node may not have any
@@ -763,13 +826,16 @@ public class Node implements Cloneable, Serializable {
    * @return this node.
    */
   public Node clonePropsFrom(Node other) {
-    Preconditions.checkState(this.propListHead == null,
+    Preconditions.checkState(!hasProps(),
         "Node has existing properties.");
     this.propListHead = other.propListHead;
+    this.propFlags = (propFlags & NON_PROP_FLAGS)
+        | (other.propFlags & ~NON_PROP_FLAGS);
     return this;
   }
 
   public void removeProp(int propType) {
+    propFlags &= ~flagBit(propType);
     PropListItem result = removeProp(propListHead, propType);
     if (result != propListHead) {
       propListHead = result;
@@ -814,6 +880,9 @@ public class Node implements Cloneable, Serializable {
    * is not defined.
    */
   public int getIntProp(int propType) {
+    if ((propFlags & flagBit(propType)) != 0) {
+      return 1;
+    }
     PropListItem item = lookupProperty(propType);
     if (item == null) {
       return 0;
@@ -843,6 +912,11 @@ public class Node implements Cloneable, Serializable {
   public void putIntProp(int propType, int value) {
     removeProp(propType);
     if (value != 0) {
+      int bit = flagBit(propType);
+      if (bit != 0 && value == 1) {
+        propFlags |= bit;
+        return;
+      }
       propListHead = createProp(propType, value, propListHead);
     }
   }
@@ -856,16 +930,20 @@ public class Node implements Cloneable, Serializable {
   }
 
   // Gets all the property types, in sorted order.
-  private int[] getSortedPropTypes() {
-    int count = 0;
+  int[] getSortedPropTypes() {
+    int count = Integer.bitCount(propFlags & ~NON_PROP_FLAGS);
     for (PropListItem x = propListHead; x != null; x = x.getNext()) {
       count++;
     }
 
     int[] keys = new int[count];
     for (PropListItem x = propListHead; x != null; x = x.getNext()) {
-      count--;
-      keys[count] = x.getType();
+      keys[--count] = x.getType();
+    }
+    for (int prop = FIRST_FLAG_PROP; prop <= LAST_PROP; prop++) {
+      if ((propFlags & flagBit(prop)) != 0) {
+        keys[--count] = prop;
+      }
     }
 
     Arrays.sort(keys);
@@ -1035,10 +1113,14 @@ public class Node implements Cloneable, Serializable {
    * Linked list of properties. Since vast majority of nodes would have
    * no more then 2 properties, linked list saves memory and provides
    * fast lookup. If this does not holds, propListHead can be replaced
-   * by UintMap.
+   * by UintMap. The flags are kept in the field below instead.
    */
   private PropListItem propListHead;
 
+  // The flags that are set to 1, a bit per prop in FLAG_PROPS. Flags set to
+  // other values are kept in the list. The top bit is CHANGED_FUNCTION_FLAG.
+  private int propFlags;
+
   /**
    * COLUMN_BITS represents how many of the lower-order bits of
    * sourcePosition are reserved for storing the column number.
@@ -1224,6 +1306,9 @@ public class Node implements Cloneable, Serializable {
    * <p>To iterate over a node's siblings, one can write</p>
    * <pre>Node n = ...;
    * for (Node child : n.children()) { ...</pre>
+   *
+   * <p>Each call allocates an iterator. Hot code should loop with
+   * {@link #getFirstChild()} and {@link #getNext()} instead.</p>
    */
   public Iterable<Node> children() {
     if (first == null) {
@@ -1326,7 +1411,9 @@ public class Node implements Cloneable, Serializable {
   }
 
   /**
-   * Iterates all of the node's ancestors excluding itself.
+   * Iterates all of the node's ancestors excluding itself. Each call
+   * allocates an iterable and an iterator; hot code should walk up with
+   * {@link #getParent()} instead.
    */
   public AncestorIterable getAncestors() {
     return new AncestorIterable(this.getParent());
@@ -1486,6 +1573,11 @@ public class Node implements Cloneable, Serializable {
     return isEquivalentTo(node, true, true);
   }
 
+  /** Returns a hash of the string or number value of this node. */
+  int getValueHash() {
+    return 0;
+  }
+
   /**
    * @param compareJsType Whether to compare the JSTypes of the nodes.
    * @param recurse Whether to compare the children of the current node, if
@@ -1604,6 +1696,76 @@ public class Node implements Cloneable, Serializable {
   // ==========================================================================
   // Mutators
 
+  /**
+   * Whether this function, or any node in it, changed since it was created
+   * or since {@link #clearChangedFunction} was last called on it or on a
+   * function around it. Changes are recorded by the mutators of Node:
+   * children added, removed or replaced, and types, strings and numbers set.
+   * Props are not tracked, so a function whose props alone changed is not
+   * marked. Only function nodes record changes.
+   */
+  public boolean isChangedFunction() {
+    return (propFlags & CHANGED_FUNCTION_FLAG) != 0;
+  }
+
+  /** Marks this function, and the functions in it, as unchanged. */
+  public void clearChangedFunction() {
+    propFlags &= ~CHANGED_FUNCTION_FLAG;
+    Node n = first;
+    while (n != null) {
+      n.propFlags &= ~CHANGED_FUNCTION_FLAG;
+      if (n.first != null) {
+        n = n.first;
+        continue;
+      }
+      while (n.next == null && n.parent != this) {
+        n = n.parent;
+      }
+      n = n.next;
+    }
+  }
+
+  /**
+   * Records a change of the subtree of this node in the functions and
+   * scripts that contain it: functions are marked as changed, and their
+   * summaries and those of scripts are no longer current.
+   *
+   * The walk stops at the first function or script that already records a
+   * change. The functions and scripts above it do too, since a change is
+   * always recorded up to such a node, clearing a function clears the
+   * functions in it, and a summary is only made current along with the
+   * summaries below it.
+   */
+  void reportChange() {
+    for (Node n = this; n != null; n = n.parent) {
+      int flags = n.propFlags;
+      if (n.type == Token.FUNCTION) {
+        if ((flags & NON_PROP_FLAGS) == CHANGED_FUNCTION_FLAG) {
+          return;
+        }
+        flags |= CHANGED_FUNCTION_FLAG;
+      } else if (n.type == Token.SCRIPT
+          && (flags & CURRENT_SUMMARY_FLAG) == 0) {
+        return;
+      }
+      n.propFlags = flags & ~CURRENT_SUMMARY_FLAG;
+    }
+  }
+
+  /**
+   * Whether the summary of this function or script kept by a
+   * {@link SubtreeSummaries} is up to date. Any change of the subtree of the
+   * node makes it out of date.
+   */
+  boolean hasCurrentSummary() {
+    return (propFlags & CURRENT_SUMMARY_FLAG) != 0;
+  }
+
+  /** Marks the summary of this function or script as up to date. */
+  void setCurrentSummary() {
+    propFlags |= CURRENT_SUMMARY_FLAG;
+  }
+
   /**
    * Removes this node from its parent. Equivalent to:
    * node.getParent().removeChild();
@@ -1632,6 +1794,7 @@ public class Node implements Cloneable, Serializable {
    * @return A Node that is the head of the list of children.
    */
   public Node removeChildren() {
+    reportChange();
     Node children = first;
     for (Node child = first; child != null; child = child.getNext()) {
       child.parent = null;
@@ -1646,6 +1809,7 @@ public class Node implements Cloneable, Serializable {
    * other.
    */
   public void detachChildren() {
+    reportChange();
     for (Node child = first; child != null;) {
       Node nextChild = child.getNext();
       child.parent = null;
@@ -1662,6 +1826,7 @@ public class Node implements Cloneable, Serializable {
     Preconditions.checkArgument(prev.next != null,
         "no next sibling.");
 
+    reportChange();
     Node child = prev.next;
     prev.next = child.next;
     if (child == last) last = prev;
@@ -1678,7 +1843,7 @@ public class Node implements Cloneable, Serializable {
     try {
       result = (Node) super.clone();
       // PropListItem lists are immutable and can be shared so there is no
-      // need to clone them here.
+      // need to clone them here. The flags are copied with the node.
       result.next = null;
       result.first = null;
       result.last = null;
@@ -1693,19 +1858,41 @@ public class Node implements Cloneable, Serializable {
    * @return A detached clone of the Node and all its children.
    */
   public Node cloneTree() {
+    // The copy is made in a single pre-order walk, without recursion, so
+    // that deep trees do not need a deep stack. The property lists and the
+    // flags are shared or copied as they are by cloneNode.
     Node result = cloneNode();
-    for (Node n2 = getFirstChild(); n2 != null; n2 = n2.getNext()) {
-      Node n2clone = n2.cloneTree();
-      n2clone.parent = result;
-      if (result.last != null) {
-        result.last.next = n2clone;
+    Node n = this;
+    Node copy = result;
+    while (true) {
+      if (n.first != null) {
+        n = n.first;
+        copy = appendClone(copy, n);
+        continue;
       }
-      if (result.first == null) {
-        result.first = n2clone;
+      while (n != this && n.next == null) {
+        n = n.parent;
+        copy = copy.parent;
       }
-      result.last = n2clone;
+      if (n == this) {
+        return result;
+      }
+      n = n.next;
+      copy = appendClone(copy.parent, n);
     }
-    return result;
+  }
+
+  /** Adds a clone of a node as the last child of a parent, and returns it. */
+  private static Node appendClone(Node parent, Node n) {
+    Node clone = n.cloneNode();
+    clone.parent = parent;
+    if (parent.last != null) {
+      parent.last.next = clone;
+    } else {
+      parent.first = clone;
+    }
+    parent.last = clone;
+    return clone;
   }
 
   /**
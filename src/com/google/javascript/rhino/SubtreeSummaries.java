@@ -0,0 +1,255 @@
+/*
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Rhino code, released
+ * May 6, 1999.
+ *
+ * The Initial Developer of the Original Code is
+ * Netscape Communications Corporation.
+ * Portions created by the Initial Developer are Copyright (C) 1997-1999
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *   Google Inc.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU General Public License Version 2 or later (the "GPL"), in which
+ * case the provisions of the GPL are applicable instead of those above. If
+ * you wish to allow use of your version of this file only under the terms of
+ * the GPL and not to allow others to use your version of this file under the
+ * MPL, indicate your decision by deleting the provisions above and replacing
+ * them with the notice and other provisions required by the GPL. If you do
+ * not delete the provisions above, a recipient may use your version of this
+ * file under either the MPL or the GPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+
+package com.google.javascript.rhino;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Summaries of the subtrees of function and script nodes: the node types in
+ * each subtree, and a hash of its structure. A summary is kept until the
+ * subtree changes, so that a later question only walks the functions that
+ * changed since, and the code around them.
+ *
+ * The summaries are kept here, keyed by node, and not on the nodes. A node
+ * only records whether its summary is current (see
+ * {@link Node#hasCurrentSummary}), which any change of its subtree clears.
+ * So a tree must only be summarized by one SubtreeSummaries, which is the
+ * one of the compiler that owns the tree.
+ *
+ */
+public class SubtreeSummaries {
+
+  // The number of bits in a mask of node types. Each type below the last bit
+  // has a bit of its own, which covers all the tokens of the AST; the other
+  // types share the last bit.
+  private static final int TYPE_MASK_BITS = 192;
+
+  private static class Summary {
+    // The mask of the types in the subtree, if typesKnown.
+    final long[] types = new long[TYPE_MASK_BITS / 64];
+    boolean typesKnown;
+
+    // The structural hash of the subtree, or 0 if it is not known.
+    int hash;
+  }
+
+  // Weak, so that the summaries of removed functions go away with them.
+  private final Map<Node, Summary> summaries =
+      new WeakHashMap<Node, Summary>();
+
+  /**
+   * Returns a mask of node types, for {@link #hasTypeInSubtree}.
+   */
+  public static long[] getTypeMask(Collection<Integer> types) {
+    long[] mask = new long[TYPE_MASK_BITS / 64];
+    for (int type : types) {
+      addType(mask, type);
+    }
+    return mask;
+  }
+
+  private static int typeBit(int type) {
+    return type >= 0 && type < TYPE_MASK_BITS ? type : TYPE_MASK_BITS - 1;
+  }
+
+  private static void addType(long[] mask, int type) {
+    int bit = typeBit(type);
+    mask[bit >> 6] |= 1L << bit;
+  }
+
+  private static boolean hasType(long[] mask, int type) {
+    int bit = typeBit(type);
+    return (mask[bit >> 6] & (1L << bit)) != 0;
+  }
+
+  private static boolean intersects(long[] mask1, long[] mask2) {
+    for (int i = 0; i < mask1.length; i++) {
+      if ((mask1[i] & mask2[i]) != 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean hasSummary(Node n) {
+    return n.isFunction() || n.isScript();
+  }
+
+  /**
+   * Returns the summary of a function or script, emptied first if it is no
+   * longer current.
+   */
+  private Summary getSummary(Node n) {
+    Summary summary = summaries.get(n);
+    if (summary == null) {
+      summary = new Summary();
+      summaries.put(n, summary);
+    } else if (!n.hasCurrentSummary()) {
+      summary.typesKnown = false;
+      summary.hash = 0;
+    }
+    // Computing a summary does not change the tree, so it is current from
+    // here on.
+    n.setCurrentSummary();
+    return summary;
+  }
+
+  /**
+   * Returns whether the subtree of a node, the node included, has a node of
+   * one of the types of a mask made by {@link #getTypeMask}. Types that share
+   * a bit of the mask can not be told apart, which none of the tokens of the
+   * AST do.
+   */
+  public synchronized boolean hasTypeInSubtree(Node root, long[] typeMask) {
+    if (hasSummary(root)) {
+      return intersects(getSubtreeTypes(root), typeMask);
+    }
+    if (hasType(typeMask, root.getType())) {
+      return true;
+    }
+    Node n = root.getFirstChild();
+    while (n != null) {
+      if (hasSummary(n)) {
+        if (intersects(getSubtreeTypes(n), typeMask)) {
+          return true;
+        }
+      } else {
+        if (hasType(typeMask, n.getType())) {
+          return true;
+        }
+        if (n.hasChildren()) {
+          n = n.getFirstChild();
+          continue;
+        }
+      }
+      n = nextInSubtree(root, n);
+    }
+    return false;
+  }
+
+  /** Returns the mask of the types in the subtree of a function or script. */
+  private long[] getSubtreeTypes(Node root) {
+    Summary summary = getSummary(root);
+    if (summary.typesKnown) {
+      return summary.types;
+    }
+
+    long[] types = summary.types;
+    Arrays.fill(types, 0);
+    addType(types, root.getType());
+    Node n = root.getFirstChild();
+    while (n != null) {
+      if (hasSummary(n)) {
+        long[] childTypes = getSubtreeTypes(n);
+        for (int i = 0; i < types.length; i++) {
+          types[i] |= childTypes[i];
+        }
+      } else {
+        addType(types, n.getType());
+        if (n.hasChildren()) {
+          n = n.getFirstChild();
+          continue;
+        }
+      }
+      n = nextInSubtree(root, n);
+    }
+    summary.typesKnown = true;
+    return types;
+  }
+
+  /**
+   * Returns a hash of the structure of the subtree of a node: the types,
+   * strings, and numbers of its nodes, and their shape. Equivalent subtrees
+   * have equal hashes, so subtrees with different hashes are not
+   * equivalent.
+   */
+  public synchronized int getStructuralHash(Node root) {
+    if (!hasSummary(root)) {
+      return hashSubtree(root);
+    }
+    Summary summary = getSummary(root);
+    if (summary.hash == 0) {
+      summary.hash = hashSubtree(root);
+    }
+    return summary.hash;
+  }
+
+  /**
+   * Hashes the nodes of a subtree in pre order, with their child counts,
+   * which determine the shape of the subtree. Functions and scripts below
+   * the root are hashed as a whole.
+   */
+  private int hashSubtree(Node root) {
+    int hash = hashNode(0, root);
+    Node n = root.getFirstChild();
+    while (n != null) {
+      if (hasSummary(n)) {
+        hash = hash * 31 + getStructuralHash(n);
+      } else {
+        hash = hashNode(hash, n);
+        if (n.hasChildren()) {
+          n = n.getFirstChild();
+          continue;
+        }
+      }
+      n = nextInSubtree(root, n);
+    }
+    return hash == 0 ? 1 : hash;
+  }
+
+  private static int hashNode(int hash, Node n) {
+    hash = (hash * 31 + n.getType()) * 31 + n.getValueHash();
+    return hash * 31 + n.getChildCount();
+  }
+
+  /**
+   * Returns the node after a node in a pre order walk of a subtree that skips
+   * the children of the node, or null at the end of the subtree.
+   */
+  private static Node nextInSubtree(Node root, Node n) {
+    while (n.getNext() == null && n.getParent() != root) {
+      n = n.getParent();
+    }
+    return n.getNext();
+  }
+}
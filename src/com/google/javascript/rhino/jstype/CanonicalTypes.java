@@ -0,0 +1,196 @@
+/*
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Rhino code, released
+ * May 6, 1999.
+ *
+ * The Initial Developer of the Original Code is
+ * Netscape Communications Corporation.
+ * Portions created by the Initial Developer are Copyright (C) 1997-1999
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *   Bob Jervis
+ *   Google Inc.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU General Public License Version 2 or later (the "GPL"), in which
+ * case the provisions of the GPL are applicable instead of those above. If
+ * you wish to allow use of your version of this file only under the terms of
+ * the GPL and not to allow others to use your version of this file under the
+ * MPL, indicate your decision by deleting the provisions above and replacing
+ * them with the notice and other provisions required by the GPL. If you do
+ * not delete the provisions above, a recipient may use your version of this
+ * file under either the MPL or the GPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+
+package com.google.javascript.rhino.jstype;
+
+import com.google.common.collect.MapMaker;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The types that are made from other types, keyed by the identities of their
+ * parts, so that a request for a type equal to one that still exists returns
+ * that type instead of a new one. Type checks then find most equal types to
+ * be the same object, and the registry holds one copy of each.
+ *
+ * A type is only kept if changes to it can not be told apart by its users.
+ * A union does rebuild its alternates when it is resolved, or when one of
+ * them turns out to be a union, but the rebuilt union stands for the same
+ * type. Function and record types, which get properties and prototypes
+ * after they are made, are not kept. The values are weakly held, so types
+ * that are no longer used are dropped.
+ *
+ * The types are not serialized with the registry, since identities do not
+ * survive serialization.
+ *
+ */
+class CanonicalTypes implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  private transient ConcurrentMap<Key, JSType> types;
+
+  private static final class Key {
+    private final Object[] parts;
+
+    // The parts from this index on are distinct, and their order does not
+    // matter.
+    private final int unorderedFrom;
+    private final int hash;
+
+    Key(Object[] parts, int unorderedFrom) {
+      this.parts = parts;
+      this.unorderedFrom = unorderedFrom;
+      int h = 0;
+      for (int i = 0; i < unorderedFrom; i++) {
+        h = h * 31 + System.identityHashCode(parts[i]);
+      }
+      for (int i = unorderedFrom; i < parts.length; i++) {
+        h += System.identityHashCode(parts[i]);
+      }
+      this.hash = h;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key that = (Key) o;
+      if (parts.length != that.parts.length
+          || unorderedFrom != that.unorderedFrom) {
+        return false;
+      }
+      for (int i = 0; i < unorderedFrom; i++) {
+        if (parts[i] != that.parts[i]) {
+          return false;
+        }
+      }
+      for (int i = unorderedFrom; i < parts.length; i++) {
+        if (!that.hasUnorderedPart(parts[i])) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private boolean hasUnorderedPart(Object part) {
+      for (int i = unorderedFrom; i < parts.length; i++) {
+        if (parts[i] == part) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public String toString() {
+      return Arrays.toString(parts);
+    }
+  }
+
+  private synchronized ConcurrentMap<Key, JSType> getTypes() {
+    if (types == null) {
+      types = new MapMaker().weakValues().makeMap();
+    }
+    return types;
+  }
+
+  /**
+   * Returns the type made from the given parts, or null if there is none.
+   * The first part should tell the kinds of types apart.
+   */
+  JSType get(Object... parts) {
+    return getTypes().get(new Key(parts, parts.length));
+  }
+
+  /**
+   * Returns the type made from the given distinct parts, in any order, or
+   * null if there is none.
+   */
+  JSType getUnordered(Object kind, Collection<?> parts) {
+    return getTypes().get(unorderedKey(kind, parts));
+  }
+
+  /**
+   * Records a type made from the given parts, unless another thread did so
+   * first, and returns the type that was recorded.
+   */
+  <T extends JSType> T put(T type, Object... parts) {
+    return put(type, new Key(parts, parts.length));
+  }
+
+  /**
+   * Records a type made from the given distinct parts, in any order, like
+   * {@link #put}.
+   */
+  <T extends JSType> T putUnordered(
+      T type, Object kind, Collection<?> parts) {
+    return put(type, unorderedKey(kind, parts));
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T extends JSType> T put(T type, Key key) {
+    JSType existing = getTypes().putIfAbsent(key, type);
+    return existing == null ? type : (T) existing;
+  }
+
+  private static Key unorderedKey(Object kind, Collection<?> parts) {
+    Object[] key = new Object[parts.size() + 1];
+    key[0] = kind;
+    int i = 1;
+    for (Object part : parts) {
+      key[i++] = part;
+    }
+    return new Key(key, 1);
+  }
+
+  /** Drops all types, such as when the native types are made again. */
+  void clear() {
+    getTypes().clear();
+  }
+}
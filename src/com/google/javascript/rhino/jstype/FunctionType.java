@@ -447,6 +447,9 @@ public class FunctionType extends PrototypeObjectType {
 
     this.prototypeSlot = new Property("prototype", prototype, true,
         propertyNode == null ? source : propertyNode);
+    if (replacedPrototype) {
+      registry.typesChanged();
+    }
     prototype.setOwnerFunction(this);
 
     if (oldPrototype != null) {
@@ -532,6 +535,7 @@ public class FunctionType extends PrototypeObjectType {
         registry.registerTypeImplementingInterface(this, type);
       }
       this.implementedInterfaces = ImmutableList.copyOf(implementedInterfaces);
+      registry.typesChanged();
     } else {
       throw new UnsupportedOperationException();
     }
@@ -579,6 +583,7 @@ public class FunctionType extends PrototypeObjectType {
     throws UnsupportedOperationException {
     if (isInterface()) {
       this.extendedInterfaces = ImmutableList.copyOf(extendedInterfaces);
+      registry.typesChanged();
     } else {
       throw new UnsupportedOperationException();
     }
@@ -1006,11 +1011,7 @@ public class FunctionType extends PrototypeObjectType {
    * the prototype chain.
    */
   @Override
-  public boolean isSubtype(JSType that) {
-    if (JSType.isSubtypeHelper(this, that)) {
-      return true;
-    }
-
+  boolean isSubtypeUncached(JSType that) {
     if (that.isFunctionType()) {
       FunctionType other = that.toMaybeFunctionType();
       if (other.isInterface()) {
@@ -1072,6 +1073,7 @@ public class FunctionType extends PrototypeObjectType {
    */
   void setInstanceType(ObjectType instanceType) {
     typeOfThis = instanceType;
+    registry.typesChanged();
   }
 
   /**
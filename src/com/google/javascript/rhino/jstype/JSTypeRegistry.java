@@ -53,6 +53,7 @@ import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.ObjectArrays;
 import com.google.javascript.rhino.ErrorReporter;
 import com.google.javascript.rhino.JSDocInfo;
 import com.google.javascript.rhino.Node;
@@ -180,6 +181,13 @@ public class JSTypeRegistry implements Serializable {
 
   private final boolean tolerateUndefinedValues;
 
+  // The results of expensive subtype checks.
+  private final SubtypeCache subtypeCache = new SubtypeCache();
+
+  // The union and templatized types that still exist, so that equal ones
+  // are shared.
+  private final CanonicalTypes canonicalTypes = new CanonicalTypes();
+
   /**
    * The type registry has three modes, which control how type ASTs are
    * converted to types in {@link #createFromTypeNodes}.
@@ -268,10 +276,60 @@ public class JSTypeRegistry implements Serializable {
     return tolerateUndefinedValues;
   }
 
+  /**
+   * Returns whether one type is a subtype of another, or null if that is not
+   * known since the types last changed.
+   */
+  Boolean getCachedSubtype(JSType subtype, JSType supertype) {
+    return subtypeCache.get(subtype, supertype);
+  }
+
+  /**
+   * Starts computing a subtype relation that is not cached. Returns a state
+   * to pass to {@link #cacheSubtype}.
+   */
+  boolean startSubtypeCheck() {
+    return subtypeCache.start();
+  }
+
+  void cacheSubtype(JSType subtype, JSType supertype, boolean isSubtype,
+      boolean state) {
+    subtypeCache.put(subtype, supertype, isSubtype, state);
+  }
+
+  /**
+   * Records that the subtype relation being computed depends on properties,
+   * which can change at any time, so that it is not cached.
+   */
+  void subtypeUsedProperties() {
+    subtypeCache.usedProperties();
+  }
+
+  /**
+   * Records that a complete type changed in a way that can change its
+   * subtype relations, such as the resolution of a named type. Setting up a
+   * new type and defining properties are not such changes.
+   */
+  void typesChanged() {
+    subtypeCache.invalidate();
+  }
+
+  /** Returns the number of subtype checks answered by the cache. */
+  public long getSubtypeCacheHitCount() {
+    return subtypeCache.getHitCount();
+  }
+
+  /** Returns the number of subtype checks that the cache could not answer. */
+  public long getSubtypeCacheMissCount() {
+    return subtypeCache.getMissCount();
+  }
+
   /**
    * Reset to run the TypeCheck pass.
    */
   public void resetForTypeCheck() {
+    subtypeCache.invalidate();
+    canonicalTypes.clear();
     typesIndexedByProperty.clear();
     eachRefTypeIndexedByProperty.clear();
     initializeBuiltInTypes();
@@ -1555,7 +1613,32 @@ public class JSTypeRegistry implements Serializable {
       ObjectType baseType, ImmutableList<JSType> templatizedTypes) {
     // Only ObjectTypes can currently be templatized; extend this logic when
     // more types can be templatized.
-    return new TemplatizedType(this, baseType, templatizedTypes);
+    // The template type map of the base type is part of the key, since the
+    // new type is made from the map the base type has at this time.
+    Object[] key = {
+        TemplatizedType.class, baseType, baseType.getTemplateTypeMap()};
+    key = ObjectArrays.concat(key, templatizedTypes.toArray(), Object.class);
+    TemplatizedType type = (TemplatizedType) canonicalTypes.get(key);
+    if (type == null) {
+      type = canonicalTypes.put(
+          new TemplatizedType(this, baseType, templatizedTypes), key);
+    }
+    return type;
+  }
+
+  /**
+   * Creates a union of alternates that are already normalized by a
+   * {@link UnionTypeBuilder}. Returns the existing union if there is one
+   * with the same alternates, in any order.
+   */
+  UnionType createUnionTypeFromAlternates(ImmutableList<JSType> alternates) {
+    UnionType type = (UnionType) canonicalTypes.getUnordered(
+        UnionType.class, alternates);
+    if (type == null) {
+      type = canonicalTypes.putUnordered(
+          new UnionType(this, alternates), UnionType.class, alternates);
+    }
+    return type;
   }
 
   /**
@@ -294,7 +294,11 @@ class PrototypeObjectType extends ObjectType {
    */
   final void setImplicitPrototype(ObjectType implicitPrototype) {
     checkState(!hasCachedValues());
+    ObjectType oldPrototype = this.implicitPrototypeFallback;
     this.implicitPrototypeFallback = implicitPrototype;
+    if (oldPrototype != null && oldPrototype != implicitPrototype) {
+      registry.typesChanged();
+    }
   }
 
   @Override
@@ -313,12 +317,30 @@ class PrototypeObjectType extends ObjectType {
     return className != null || ownerFunction != null;
   }
 
+  /**
+   * Answers from the subtype cache of the registry when it can; the
+   * relation itself is computed by {@link #isSubtypeUncached}.
+   */
   @Override
   public boolean isSubtype(JSType that) {
-    if (JSType.isSubtypeHelper(this, that)) {
+    if (this == that || JSType.isSubtypeHelper(this, that)) {
       return true;
     }
+    Boolean cached = registry.getCachedSubtype(this, that);
+    if (cached != null) {
+      return cached;
+    }
+    boolean state = registry.startSubtypeCheck();
+    boolean result = isSubtypeUncached(that);
+    registry.cacheSubtype(this, that, result, state);
+    return result;
+  }
 
+  /**
+   * Computes the subtype relation, once {@link JSType#isSubtypeHelper} did
+   * not find it.
+   */
+  boolean isSubtypeUncached(JSType that) {
     // Union types
     if (that.isUnionType()) {
       // The static {@code JSType.isSubtype} check already decomposed
@@ -387,6 +409,9 @@ class PrototypeObjectType extends ObjectType {
   @Override
   void setOwnerFunction(FunctionType type) {
     Preconditions.checkState(ownerFunction == null || type == null);
+    if (ownerFunction != null) {
+      registry.typesChanged();
+    }
     ownerFunction = type;
   }
 
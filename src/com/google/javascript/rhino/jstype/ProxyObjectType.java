@@ -84,6 +84,10 @@ class ProxyObjectType extends ObjectType {
   }
 
   void setReferencedType(JSType referencedType) {
+    if (this.referencedType != null
+        && this.referencedType != referencedType) {
+      registry.typesChanged();
+    }
     this.referencedType = referencedType;
     if (referencedType instanceof ObjectType) {
       this.referencedObjType = (ObjectType) referencedType;
@@ -208,25 +208,20 @@ class RecordType extends PrototypeObjectType {
   }
 
   @Override
-  public boolean isSubtype(JSType that) {
-    if (JSType.isSubtypeHelper(this, that)) {
-      return true;
-    }
-
-    // Top of the record types is the empty record, or OBJECT_TYPE.
-    if (registry.getNativeObjectType(
-            JSTypeNative.OBJECT_TYPE).isSubtype(that)) {
-      return true;
-    }
-
+  boolean isSubtypeUncached(JSType that) {
     // A type is a subtype of a record type if it itself is a record
     // type and it has at least the same members as the parent record type
     // with the same types.
-    if (!that.isRecordType()) {
-      return false;
+    if (that.isRecordType()
+        && RecordType.isSubtype(this, that.toMaybeRecordType())) {
+      return true;
     }
 
-    return RecordType.isSubtype(this, that.toMaybeRecordType());
+    // Top of the record types is the empty record, or OBJECT_TYPE. This is
+    // checked last, since it depends on the properties of OBJECT_TYPE, and
+    // so can not be cached.
+    return registry.getNativeObjectType(
+        JSTypeNative.OBJECT_TYPE).isSubtype(that);
   }
 
   /** Determines if typeA is a subtype of typeB */
@@ -248,7 +243,18 @@ class RecordType extends PrototypeObjectType {
     // properties. But z can be assigned to x. Even though z and y are the
     // same type, the properties of z are inferred--and so an assignment
     // to the property of z would not violate any restrictions on it.
+    //
+    // Unlike the own properties of a complete record, the properties of
+    // other types can still change, so a result that looks at them is not
+    // cached.
+    if (!typeA.isRecordType() || !typeA.toMaybeRecordType().isFrozen
+        || !typeB.isFrozen) {
+      typeA.registry.subtypeUsedProperties();
+    }
     for (String property : typeB.getOwnPropertyNames()) {
+      if (!typeA.hasOwnProperty(property)) {
+        typeA.registry.subtypeUsedProperties();
+      }
       if (!typeA.hasProperty(property)) {
         return false;
       }
@@ -0,0 +1,183 @@
+/*
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Rhino code, released
+ * May 6, 1999.
+ *
+ * The Initial Developer of the Original Code is
+ * Netscape Communications Corporation.
+ * Portions created by the Initial Developer are Copyright (C) 1997-1999
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *   Bob Jervis
+ *   Google Inc.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU General Public License Version 2 or later (the "GPL"), in which
+ * case the provisions of the GPL are applicable instead of those above. If
+ * you wish to allow use of your version of this file only under the terms of
+ * the GPL and not to allow others to use your version of this file under the
+ * MPL, indicate your decision by deleting the provisions above and replacing
+ * them with the notice and other provisions required by the GPL. If you do
+ * not delete the provisions above, a recipient may use your version of this
+ * file under either the MPL or the GPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+
+package com.google.javascript.rhino.jstype;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of the results of {@link JSType#isSubtype} for the types
+ * whose subtype relation is structural and expensive to compute: object,
+ * function, record, and union types. The types are keyed by identity.
+ *
+ * A result stays valid while the types it was computed from keep their
+ * structure. Setting up a new type does not affect results, since no result
+ * was computed from it yet; a change to a type that is already complete,
+ * such as replacing a prototype or resolving a named type, is reported with
+ * {@link #invalidate}, which drops all results.
+ *
+ * Properties are defined throughout type inference and type checking, so
+ * they are not tracked. Instead, a result that looked at the properties of a
+ * type that can still change, which only a check against a record type
+ * does, is not kept. Such checks are reported with {@link #usedProperties}.
+ *
+ * The results are not serialized with the registry, since identities do not
+ * survive serialization.
+ *
+ */
+class SubtypeCache implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  // The largest number of results kept; the least recently used results
+  // are dropped first.
+  static final int MAX_SIZE = 20000;
+
+  private long hits = 0;
+  private long misses = 0;
+  private transient Map<TypePair, Boolean> results;
+
+  // The key used for lookups, so that a lookup does not allocate.
+  private transient TypePair probe;
+
+  // Whether the check being computed looked at properties that can change.
+  private boolean usedProperties = false;
+
+  private static final class TypePair {
+    private JSType subtype;
+    private JSType supertype;
+
+    TypePair(JSType subtype, JSType supertype) {
+      this.subtype = subtype;
+      this.supertype = supertype;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof TypePair)) {
+        return false;
+      }
+      TypePair that = (TypePair) o;
+      return subtype == that.subtype && supertype == that.supertype;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(subtype) * 31
+          + System.identityHashCode(supertype);
+    }
+  }
+
+  /**
+   * Returns whether one type is a subtype of another, or null if it is not
+   * known since the last change to the types.
+   */
+  synchronized Boolean get(JSType subtype, JSType supertype) {
+    if (results != null) {
+      probe.subtype = subtype;
+      probe.supertype = supertype;
+      Boolean result = results.get(probe);
+      probe.subtype = null;
+      probe.supertype = null;
+      if (result != null) {
+        hits++;
+        return result;
+      }
+    }
+    misses++;
+    return null;
+  }
+
+  /**
+   * Starts the computation of a result, and returns a state to pass to
+   * {@link #put} once it is done. Computations may nest.
+   */
+  synchronized boolean start() {
+    boolean outer = usedProperties;
+    usedProperties = false;
+    return outer;
+  }
+
+  /**
+   * Records a result computed since {@link #start}, unless it looked at
+   * properties that can change.
+   */
+  synchronized void put(JSType subtype, JSType supertype, boolean isSubtype,
+      boolean state) {
+    if (!usedProperties) {
+      if (results == null) {
+        probe = new TypePair(null, null);
+        results = new LinkedHashMap<TypePair, Boolean>(16, 0.75f, true) {
+          private static final long serialVersionUID = 1L;
+
+          @Override
+          protected boolean removeEldestEntry(
+              Map.Entry<TypePair, Boolean> e) {
+            return size() > MAX_SIZE;
+          }
+        };
+      }
+      results.put(new TypePair(subtype, supertype), isSubtype);
+    }
+    // The enclosing computation depends on whatever this one depended on.
+    usedProperties |= state;
+  }
+
+  /** Records that the current computation looked at changing properties. */
+  synchronized void usedProperties() {
+    usedProperties = true;
+  }
+
+  /** Records a change to a complete type, which makes all results stale. */
+  synchronized void invalidate() {
+    if (results != null) {
+      results.clear();
+    }
+  }
+
+  synchronized long getHitCount() {
+    return hits;
+  }
+
+  synchronized long getMissCount() {
+    return misses;
+  }
+}
@@ -459,12 +459,20 @@ public class UnionType extends JSType {
     if (that.isAllType()) {
       return true;
     }
+    Boolean cached = registry.getCachedSubtype(this, that);
+    if (cached != null) {
+      return cached;
+    }
+    boolean state = registry.startSubtypeCheck();
+    boolean result = true;
     for (JSType element : alternates) {
       if (!element.isSubtype(that)) {
-        return false;
+        result = false;
+        break;
       }
     }
-    return true;
+    registry.cacheSubtype(this, that, result, state);
+    return result;
   }
 
   @Override
@@ -317,13 +317,14 @@ class UnionTypeBuilder implements Serializable {
     if (result == null) {
       result = reduceAlternatesWithoutUnion();
       if (result == null) {
-        result = new UnionType(registry, getAlternateListCopy());
+        result = registry.createUnionTypeFromAlternates(
+            getAlternateListCopy());
       }
     }
     return result;
   }
 
-  private Collection<JSType> getAlternateListCopy() {
+  private ImmutableList<JSType> getAlternateListCopy() {
     return ImmutableList.copyOf(alternates);
   }
 }
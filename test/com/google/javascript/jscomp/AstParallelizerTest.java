@@ -96,6 +96,28 @@ public class AstParallelizerTest extends TestCase {
         "var a", "var b", "var c", "var d", "function e() {}"});
   }
 
+  public void testJoinAfterPlaceHolderMoved() {
+    Compiler compiler = new Compiler();
+    Node root = compiler.parseTestCode(
+        "var a = 1; var b = function() { return 1; };");
+    AstParallelizer parallelizer =
+        AstParallelizer.createNewOpaqueFunctionLevelAstParallelizer(root);
+    List<Node> forest = parallelizer.split();
+    assertEquals(2, forest.size());
+    assertEquals(
+        "var a=1;var b=function " + HOLDER + "(){return this}",
+        compiler.toSource(root));
+
+    // Move the place holder, as a pass run over the root might.
+    Node placeHolder = parallelizer.getPlaceHolders().get(0);
+    Node nameA = root.getFirstChild().getFirstChild();
+    nameA.replaceChild(nameA.getFirstChild(), placeHolder.detachFromParent());
+
+    parallelizer.join();
+    assertEquals(
+        "var a=function(){return 1};var b", compiler.toSource(root));
+  }
+
   /**
    * Splits at function level with {@link AstParallelizer#split()}, verify the
    * output matches what is expected and then verify
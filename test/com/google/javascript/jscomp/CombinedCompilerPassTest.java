@@ -203,6 +203,25 @@ public class CombinedCompilerPassTest extends TestCase  {
     }
   }
 
+  public void testTimedCombinedPasses() {
+    List<TestHelper> tests  = createStringTests();
+    List<Callback> callbacks = Lists.newArrayList();
+    List<String> names = Lists.newArrayList();
+    for (TestHelper test : tests) {
+      callbacks.add(test.getTraversal());
+      names.add("pass" + names.size());
+    }
+    CombinedCompilerPass pass =
+        new CombinedCompilerPass(compiler, callbacks, names);
+    pass.setTimed(true);
+    pass.process(null, createPostOrderAlphabet());
+    for (TestHelper test : tests) {
+      test.checkResults();
+    }
+    assertEquals(names,
+        Lists.newArrayList(pass.getCallbackRuntimes().keySet()));
+  }
+
   /**
    * Records the scopes visited during an AST traversal. Abbreviates traversals
    * by ignoring subtrees rooted with specified NAME nodes.
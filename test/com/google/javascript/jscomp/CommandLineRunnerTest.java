@@ -30,6 +30,7 @@ import com.google.javascript.rhino.Node;
 
 import junit.framework.TestCase;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
@@ -1116,6 +1117,92 @@ public class CommandLineRunnerTest extends TestCase {
       "Manifest files cannot be generated when the input is from stdin.");
   }
 
+  public void testDaemonRewritesOnlyChangedOutputs() {
+    args.add("--daemon");
+    useModules = ModulePattern.CHAIN;
+    final String[][] versions = {
+        {"var a = 1; alert(a);", "alert(a + 1);"},
+        {"var a = 1; alert(a);", "alert(a + 2);"}};
+    CommandLineRunner runner = createCommandLineRunner(versions[0]);
+    runner.setDaemonInput(new ByteArrayInputStream(
+        "/path/to/input1.js\n\n\n".getBytes()));
+    runner.enableTestMode(
+        Suppliers.<List<SourceFile>>ofInstance(externs),
+        null,
+        new Supplier<List<JSModule>>() {
+          private int compiles = 0;
+
+          @Override
+          public List<JSModule> get() {
+            return Lists.newArrayList(CompilerTestCase.createModuleChain(
+                versions[Math.min(compiles++, versions.length - 1)]));
+          }
+        },
+        new Function<Integer, Boolean>() {
+          @Override
+          public Boolean apply(Integer code) {
+            return exitCodes.add(code);
+          }
+        });
+    runner.run();
+
+    assertEquals(ImmutableList.of(0), exitCodes);
+    String err = new String(errReader.toByteArray());
+    int first = err.indexOf("; 2 of 2 outputs changed.");
+    assertTrue(err, first >= 0);
+    assertTrue(err, err.indexOf("; 1 of 2 outputs changed.", first) > 0);
+    assertTrue(runner.getCompiler().toSource().contains("a+2"));
+  }
+
+  public void testDaemonKeepsRunningAfterAFailedCompile() {
+    args.add("--daemon");
+    useModules = ModulePattern.CHAIN;
+    final String[] version = {"var a = 1; alert(a);", "alert(a + 1);"};
+    CommandLineRunner runner = createCommandLineRunner(version);
+    runner.setDaemonInput(new ByteArrayInputStream(
+        "/path/to/input1.js\n\n/path/to/input1.js\n\n".getBytes()));
+    runner.enableTestMode(
+        Suppliers.<List<SourceFile>>ofInstance(externs),
+        null,
+        new Supplier<List<JSModule>>() {
+          private int compiles = 0;
+
+          @Override
+          public List<JSModule> get() {
+            if (compiles++ == 1) {
+              throw new IllegalStateException("Cannot read the modules");
+            }
+            return Lists.newArrayList(
+                CompilerTestCase.createModuleChain(version));
+          }
+        },
+        new Function<Integer, Boolean>() {
+          @Override
+          public Boolean apply(Integer code) {
+            return exitCodes.add(code);
+          }
+        });
+    runner.run();
+
+    assertEquals(ImmutableList.of(0), exitCodes);
+    String err = new String(errReader.toByteArray());
+    int failure = err.indexOf("Cannot read the modules");
+    assertTrue(err, failure >= 0);
+    assertTrue(err, err.indexOf("outputs changed.", failure) > 0);
+  }
+
+  public void testDaemonNeedsOutputFile() throws IOException {
+    args.add("--use_only_custom_externs=true");
+    args.add("--daemon");
+    CommandLineRunner runner = createCommandLineRunner(new String[0]);
+    try {
+      runner.doRun();
+      fail("Expected FlagUsageException");
+    } catch (FlagUsageException e) {
+      assertTrue(e.getMessage().startsWith("daemon requires"));
+    }
+  }
+
   public void testTransformAMD() {
     args.add("--transform_amd_modules");
     test("define({test: 1})", "exports = {test: 1}");
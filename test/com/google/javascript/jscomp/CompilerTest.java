@@ -22,6 +22,8 @@ import com.google.javascript.rhino.Node;
 
 import junit.framework.TestCase;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
 import java.util.List;
 
 /**
@@ -139,6 +141,158 @@ public class CompilerTest extends TestCase {
             "required entry point \"module$missing\" never provided"));
   }
 
+  public void testParallelParseMatchesSerialParse() throws Exception {
+    List<SourceFile> inputs = Lists.newArrayList();
+    for (int i = 0; i < 20; i++) {
+      inputs.add(SourceFile.fromCode("input" + i + ".js",
+          "var a" + i + " = function() { return f(" + i + "); };"));
+    }
+
+    Compiler serial = parseWithThreads(inputs, 1);
+    Compiler parallel = parseWithThreads(inputs, 4);
+    assertEquals(0, parallel.getErrorCount());
+    assertNull(serial.jsRoot.checkTreeEquals(parallel.jsRoot));
+    assertEquals(serial.toSource(), parallel.toSource());
+  }
+
+  public void testParallelParseReportsErrorsInInputOrder() throws Exception {
+    List<SourceFile> inputs = Lists.newArrayList();
+    for (int i = 0; i < 20; i++) {
+      inputs.add(SourceFile.fromCode("input" + i + ".js",
+          i % 3 == 0 ? "var x" + i + " = ;" : "var y" + i + ";"));
+    }
+
+    Compiler serial = parseWithThreads(inputs, 1);
+    Compiler parallel = parseWithThreads(inputs, 4);
+    JSError[] serialErrors = serial.getErrors();
+    JSError[] parallelErrors = parallel.getErrors();
+    assertEquals(7, serialErrors.length);
+    assertEquals(serialErrors.length, parallelErrors.length);
+    for (int i = 0; i < serialErrors.length; i++) {
+      assertEquals(serialErrors[i].toString(), parallelErrors[i].toString());
+    }
+  }
+
+  public void testFusedChecksAreTrackedSeparately() throws Exception {
+    String js = "var x = {}; x; with (x) {}";
+    CompilerOptions options = new CompilerOptions();
+    options.ideMode = true;
+    options.checkSuspiciousCode = true;
+    options.checkControlStructures = true;
+    options.setTracerMode(CompilerOptions.TracerMode.TIMING_ONLY);
+    // The tracer report goes to, and closes, the stream of the compiler.
+    Compiler compiler =
+        new Compiler(new PrintStream(new ByteArrayOutputStream()));
+    compiler.compile(SourceFile.fromCode("externs.js", ""),
+        SourceFile.fromCode("input.js", js), options);
+    assertEquals(2, compiler.getWarningCount() + compiler.getErrorCount());
+    assertTrue(compiler.tracker.getStats().containsKey("checkSideEffects"));
+    assertTrue(compiler.tracker.getStats().containsKey("suspiciousCode"));
+    assertTrue(compiler.tracker.getStats().containsKey(
+        "checkControlStructures"));
+  }
+
+  public void testFusedChecksCanBeReplaced() {
+    CompilerOptions options = new CompilerOptions();
+    options.checkSuspiciousCode = true;
+    options.checkControlStructures = true;
+    List<PassFactory> checks = new DefaultPassConfig(options).getChecks();
+    PassFactory replacement = new PassFactory("suspiciousCode", true) {
+      @Override
+      protected CompilerPass create(AbstractCompiler compiler) {
+        return null;
+      }
+    };
+    PassConfig.replacePassFactory(checks, replacement);
+    assertTrue(checks.contains(replacement));
+  }
+
+  public void testOptimizationBudgetCutsLoops() throws Exception {
+    String js = "function f(a) { if (a) { return 1 + 2; } } f(1);";
+    CompilerOptions options = new CompilerOptions();
+    CompilationLevel.SIMPLE_OPTIMIZATIONS.setOptionsForCompilationLevel(
+        options);
+    Compiler compiler = new Compiler();
+    Result result = compiler.compile(SourceFile.fromCode("externs.js", ""),
+        SourceFile.fromCode("input.js", js), options);
+    assertTrue(result.success);
+    assertTrue(result.passesCutByBudget.isEmpty());
+
+    options.setOptimizationHeapBudgetBytes(1);
+    Compiler cut = new Compiler();
+    result = cut.compile(SourceFile.fromCode("externs.js", ""),
+        SourceFile.fromCode("input.js", js), options);
+    assertTrue(result.success);
+    assertTrue(result.passesCutByBudget.contains("peepholeOptimizations"));
+    assertEquals(0, cut.getErrorCount());
+  }
+
+  public void testParallelModulePrintingMatchesSerial() throws Exception {
+    JSModule[] modules = new JSModule[8];
+    for (int i = 0; i < modules.length; i++) {
+      modules[i] = new JSModule("m" + i);
+      if (i > 0) {
+        modules[i].addDependency(modules[0]);
+      }
+      modules[i].add(SourceFile.fromCode("a" + i + ".js",
+          "var a" + i + " = function(x) { return x + " + i + "; };"));
+      modules[i].add(SourceFile.fromCode("b" + i + ".js",
+          "/** @license L" + i + " */ alert(a" + i + "(1));"));
+    }
+    CompilerOptions options = new CompilerOptions();
+    options.sourceMapOutputPath = "out.map";
+    options.sourceMapFormat = SourceMap.Format.V3;
+    options.printInputDelimiter = true;
+    options.setPrintThreads(4);
+    Compiler compiler = new Compiler();
+    compiler.compileModules(ImmutableList.<SourceFile>of(),
+        Lists.newArrayList(modules), options);
+
+    List<Compiler.ModuleOutput> outputs =
+        compiler.toModuleOutputs(Lists.newArrayList(modules));
+    assertEquals(modules.length, outputs.size());
+    for (int i = 0; i < modules.length; i++) {
+      Compiler.ModuleOutput output = outputs.get(i);
+      assertSame(modules[i], output.getModule());
+      compiler.getSourceMap().reset();
+      assertEquals(compiler.toSource(modules[i]), output.getCode());
+
+      StringBuilder expected = new StringBuilder();
+      compiler.getSourceMap().appendTo(expected, modules[i].getName());
+      StringBuilder actual = new StringBuilder();
+      output.getSourceMap().appendTo(actual, modules[i].getName());
+      assertEquals(expected.toString(), actual.toString());
+    }
+  }
+
+  public void testParallelToSourceArrayMatchesSerial() throws Exception {
+    List<SourceFile> inputs = Lists.newArrayList();
+    for (int i = 0; i < 20; i++) {
+      inputs.add(SourceFile.fromCode("input" + i + ".js",
+          "var a" + i + " = function() { return f(" + i + "); };"));
+    }
+    CompilerOptions options = new CompilerOptions();
+    options.printInputDelimiter = true;
+    Compiler serial = new Compiler();
+    serial.compile(ImmutableList.<SourceFile>of(), inputs, options);
+    options.setPrintThreads(4);
+    Compiler parallel = new Compiler();
+    parallel.compile(ImmutableList.<SourceFile>of(), inputs, options);
+
+    assertEquals(ImmutableList.copyOf(serial.toSourceArray()),
+        ImmutableList.copyOf(parallel.toSourceArray()));
+  }
+
+  private static Compiler parseWithThreads(
+      List<SourceFile> inputs, int threads) {
+    CompilerOptions options = new CompilerOptions();
+    options.setParseThreads(threads);
+    Compiler compiler = new Compiler();
+    compiler.init(ImmutableList.<SourceFile>of(), inputs, options);
+    compiler.parseInputs();
+    return compiler;
+  }
+
   private Compiler initCompilerForCommonJS(
       List<SourceFile> inputs, List<String> entryPoints)
       throws Exception {
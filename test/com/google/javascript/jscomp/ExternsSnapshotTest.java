@@ -0,0 +1,187 @@
+/*
+ * Copyright 2013 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.javascript.rhino.InputId;
+import com.google.javascript.rhino.Node;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tests for {@link ExternsSnapshot}.
+ *
+ */
+public class ExternsSnapshotTest extends TestCase {
+
+  private static final List<SourceFile> EXTERNS = ImmutableList.of(
+      SourceFile.fromCode("externs1.js",
+          "/** @constructor */ function Element() {}\n"
+          + "/** @type {string} */ Element.prototype.id;"),
+      SourceFile.fromCode("externs2.js",
+          "/** @param {string} id\n @return {Element} */\n"
+          + "function getElement(id) {}"));
+
+  private static final String INPUT =
+      "var e = getElement('a'); var x = e.id; e.id = 3; e.missing();";
+
+  public void testSameResultAsParsedExterns() {
+    ExternsSnapshot snapshot = ExternsSnapshot.create(EXTERNS, newOptions());
+
+    Compiler parsed = compile(null, EXTERNS);
+    Compiler fromSnapshot = compile(snapshot, EXTERNS);
+    assertSameResult(parsed, fromSnapshot);
+    assertTrue(parsed.getWarningCount() > 0);
+    assertFalse(fromSnapshot.getInput(new InputId("externs1.js"))
+        .getSourceAst() instanceof JsAst);
+  }
+
+  public void testSnapshotNotModifiedByCompiles() {
+    // Type checking and optimizations change the externs of a compile; none
+    // of that may leak into the next compile.
+    ExternsSnapshot snapshot = ExternsSnapshot.create(EXTERNS, newOptions());
+    Compiler first = compile(snapshot, EXTERNS);
+    assertSameResult(first, compile(snapshot, EXTERNS));
+  }
+
+  public void testConcurrentCompiles() throws Exception {
+    final ExternsSnapshot snapshot =
+        ExternsSnapshot.create(EXTERNS, newOptions());
+    Compiler expected = compile(null, EXTERNS);
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Compiler>> results = Lists.newArrayList();
+      for (int i = 0; i < 16; i++) {
+        results.add(executor.submit(new Callable<Compiler>() {
+          @Override
+          public Compiler call() {
+            return compile(snapshot, EXTERNS);
+          }
+        }));
+      }
+      for (Future<Compiler> result : results) {
+        assertSameResult(expected, result.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  public void testChangedExternIsParsed() {
+    ExternsSnapshot snapshot = ExternsSnapshot.create(EXTERNS, newOptions());
+    List<SourceFile> changed = ImmutableList.of(
+        EXTERNS.get(0),
+        SourceFile.fromCode("externs2.js",
+            "/** @param {string} id\n @return {number} */\n"
+            + "function getElement(id) {}"));
+
+    Compiler fromSnapshot = compile(snapshot, changed);
+    assertSameResult(compile(null, changed), fromSnapshot);
+    assertTrue(fromSnapshot.getInput(new InputId("externs2.js"))
+        .getSourceAst() instanceof JsAst);
+  }
+
+  public void testIncompatibleOptions() {
+    CompilerOptions options = newOptions();
+    options.setLanguageIn(CompilerOptions.LanguageMode.ECMASCRIPT5);
+    ExternsSnapshot snapshot = ExternsSnapshot.create(EXTERNS, options);
+
+    assertFalse(snapshot.isCompatibleWith(newOptions()));
+    assertSameResult(compile(null, EXTERNS), compile(snapshot, EXTERNS));
+  }
+
+  public void testParseErrorsReportedByEachCompile() {
+    List<SourceFile> broken = ImmutableList.of(
+        SourceFile.fromCode("broken.js", "function f( {}"));
+    ExternsSnapshot snapshot = ExternsSnapshot.create(broken, newOptions());
+
+    Compiler parsed = compile(null, broken);
+    assertEquals(1, parsed.getErrorCount());
+    assertSameResult(parsed, compile(snapshot, broken));
+    assertSameResult(parsed, compile(snapshot, broken));
+  }
+
+  public void testGetExterns() {
+    ExternsSnapshot snapshot = ExternsSnapshot.create(EXTERNS, newOptions());
+    assertEquals(EXTERNS, snapshot.getExterns());
+  }
+
+  public void testSerializedAst() throws Exception {
+    ExternsSnapshot snapshot = ExternsSnapshot.create(EXTERNS, newOptions());
+    Compiler compiler = compile(snapshot, EXTERNS);
+    SourceFile file = EXTERNS.get(0);
+    SourceAst ast = snapshot.getAst(file);
+    Node root = ast.getAstRoot(compiler);
+
+    SourceAst copy = serializeAndRead(ast);
+    assertEquals(ast.getInputId(), copy.getInputId());
+    assertEquals(file.getName(), copy.getSourceFile().getName());
+    assertNull(root.checkTreeEquals(copy.getAstRoot(compiler)));
+
+    // Without the snapshot, the file is parsed again.
+    copy.clearAst();
+    assertNull(root.checkTreeEquals(copy.getAstRoot(compiler)));
+  }
+
+  private static SourceAst serializeAndRead(SourceAst ast) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(ast);
+    out.close();
+    ObjectInputStream in = new ObjectInputStream(
+        new ByteArrayInputStream(bytes.toByteArray()));
+    return (SourceAst) in.readObject();
+  }
+
+  private static void assertSameResult(Compiler expected, Compiler actual) {
+    assertEquals(ImmutableList.copyOf(expected.getErrors()).toString(),
+        ImmutableList.copyOf(actual.getErrors()).toString());
+    assertEquals(ImmutableList.copyOf(expected.getWarnings()).toString(),
+        ImmutableList.copyOf(actual.getWarnings()).toString());
+    assertEquals(expected.toSource(), actual.toSource());
+  }
+
+  private static CompilerOptions newOptions() {
+    CompilerOptions options = new CompilerOptions();
+    CompilationLevel.ADVANCED_OPTIMIZATIONS.setOptionsForCompilationLevel(
+        options);
+    WarningLevel.VERBOSE.setOptionsForWarningLevel(options);
+    return options;
+  }
+
+  private static Compiler compile(
+      ExternsSnapshot snapshot, List<SourceFile> externs) {
+    Compiler compiler = new Compiler();
+    compiler.setExternsSnapshot(snapshot);
+    compiler.compile(externs,
+        ImmutableList.of(SourceFile.fromCode("input.js", INPUT)),
+        newOptions());
+    return compiler;
+  }
+}
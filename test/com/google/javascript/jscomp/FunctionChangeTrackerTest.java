@@ -0,0 +1,112 @@
+/*
+ * Copyright 2013 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.base.Predicate;
+import com.google.javascript.rhino.IR;
+import com.google.javascript.rhino.Node;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link FunctionChangeTracker}.
+ *
+ */
+public class FunctionChangeTrackerTest extends TestCase {
+
+  private Node root;
+  private Node f;
+  private Node g;
+
+  @Override
+  protected void setUp() {
+    Compiler compiler = new Compiler();
+    root = compiler.parseTestCode(
+        "function f() { return 1; } var g = function() { return 2; };");
+    f = root.getFirstChild();
+    g = root.getLastChild().getFirstChild().getFirstChild();
+  }
+
+  public void testFirstRunVisitsAllFunctions() {
+    FunctionChangeTracker tracker = new FunctionChangeTracker(root);
+    Predicate<Node> visit = tracker.startPass("a");
+    assertTrue(visit.apply(f));
+    assertTrue(visit.apply(g));
+  }
+
+  public void testLaterRunsVisitChangedFunctions() {
+    FunctionChangeTracker tracker = new FunctionChangeTracker(root);
+    tracker.startPass("a");
+    tracker.endPass(root);
+    tracker.startPass("b");
+    changeBody(f);
+    tracker.endPass(root);
+
+    Predicate<Node> visit = tracker.startPass("a");
+    assertTrue(visit.apply(f));
+    assertFalse(visit.apply(g));
+    tracker.endPass(root);
+
+    visit = tracker.startPass("a");
+    assertFalse(visit.apply(f));
+    assertFalse(visit.apply(g));
+  }
+
+  public void testPassRevisitsFunctionsItChanged() {
+    FunctionChangeTracker tracker = new FunctionChangeTracker(root);
+    tracker.startPass("a");
+    changeBody(g);
+    tracker.endPass(root);
+    tracker.startPass("b");
+    tracker.endPass(root);
+
+    Predicate<Node> visit = tracker.startPass("a");
+    assertFalse(visit.apply(f));
+    assertTrue(visit.apply(g));
+  }
+
+  public void testNewFunctionsAreVisited() {
+    FunctionChangeTracker tracker = new FunctionChangeTracker(root);
+    tracker.startPass("a");
+    tracker.endPass(root);
+    tracker.startPass("b");
+    Node h = IR.function(IR.name("h"), IR.paramList(), IR.block());
+    root.addChildToBack(h);
+    tracker.endPass(root);
+
+    Predicate<Node> visit = tracker.startPass("a");
+    assertFalse(visit.apply(f));
+    assertTrue(visit.apply(h));
+  }
+
+  public void testNestedChangesMarkTopLevelFunction() {
+    Node inner = IR.function(IR.name("inner"), IR.paramList(), IR.block());
+    f.getLastChild().addChildToFront(inner);
+    FunctionChangeTracker tracker = new FunctionChangeTracker(root);
+    tracker.startPass("a");
+    tracker.endPass(root);
+    tracker.startPass("b");
+    inner.getLastChild().addChildToBack(IR.returnNode());
+    tracker.endPass(root);
+
+    assertTrue(tracker.startPass("a").apply(f));
+  }
+
+  private static void changeBody(Node fn) {
+    fn.getLastChild().addChildToBack(IR.returnNode());
+  }
+}
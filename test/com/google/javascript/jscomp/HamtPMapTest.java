@@ -0,0 +1,107 @@
+/*
+ * Copyright 2013 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.collect.Lists;
+
+import junit.framework.TestCase;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for {@link HamtPMap}.
+ *
+ */
+public class HamtPMapTest extends TestCase {
+
+  public void testPlusAndGet() {
+    HamtPMap<String, String> empty = HamtPMap.empty();
+    HamtPMap<String, String> map = empty;
+    for (int i = 0; i < 1000; i++) {
+      map = map.plus("k" + i, "v" + i);
+    }
+    assertTrue(empty.isEmpty());
+    assertNull(empty.get("k0"));
+    for (int i = 0; i < 1000; i++) {
+      assertEquals("v" + i, map.get("k" + i));
+    }
+    assertNull(map.get("k1000"));
+
+    HamtPMap<String, String> changed = map.plus("k5", "x");
+    assertEquals("x", changed.get("k5"));
+    assertEquals("v5", map.get("k5"));
+  }
+
+  public void testSameValueKeepsMap() {
+    String value = "v";
+    HamtPMap<String, String> map =
+        HamtPMap.<String, String>empty().plus("k", value);
+    assertSame(map, map.plus("k", value));
+  }
+
+  public void testCollidingHashes() {
+    // "Aa" and "BB" have the same hash code.
+    assertEquals("Aa".hashCode(), "BB".hashCode());
+    HamtPMap<String, String> map = HamtPMap.<String, String>empty()
+        .plus("Aa", "1").plus("BB", "2").plus("C", "3");
+    assertEquals("1", map.get("Aa"));
+    assertEquals("2", map.get("BB"));
+    assertEquals("3", map.get("C"));
+
+    HamtPMap<String, String> changed = map.plus("Aa", "4");
+    assertEquals("4", changed.get("Aa"));
+    assertEquals("2", changed.get("BB"));
+    assertEquals(Lists.newArrayList("Aa"), diff(map, changed));
+  }
+
+  public void testDiff() {
+    HamtPMap<String, String> base = HamtPMap.empty();
+    for (int i = 0; i < 100; i++) {
+      base = base.plus("k" + i, "v" + i);
+    }
+    HamtPMap<String, String> a = base.plus("k1", "a").plus("new", "a");
+    HamtPMap<String, String> b = base.plus("k2", "b");
+
+    assertEquals(Collections.<String>emptyList(), diff(a, a));
+    assertEquals(Lists.newArrayList("k1", "k2", "new"), diff(a, b));
+    assertEquals(Lists.newArrayList("k1", "k2", "new"), diff(b, a));
+  }
+
+  public void testShapeDoesNotDependOnOrder() {
+    HamtPMap<String, String> forward = HamtPMap.empty();
+    HamtPMap<String, String> backward = HamtPMap.empty();
+    for (int i = 0; i < 100; i++) {
+      forward = forward.plus("k" + i, "v");
+      backward = backward.plus("k" + (99 - i), "v");
+    }
+    assertEquals(Collections.<String>emptyList(), diff(forward, backward));
+  }
+
+  private static List<String> diff(
+      HamtPMap<String, String> a, HamtPMap<String, String> b) {
+    final List<String> keys = Lists.newArrayList();
+    HamtPMap.diff(a, b, new HamtPMap.Differ<String, String>() {
+      @Override
+      public void apply(String key, String value1, String value2) {
+        keys.add(key);
+      }
+    });
+    Collections.sort(keys);
+    return keys;
+  }
+}
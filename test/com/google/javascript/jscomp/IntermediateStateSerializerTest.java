@@ -0,0 +1,146 @@
+/*
+ * Copyright 2013 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.collect.ImmutableList;
+import com.google.javascript.rhino.Node;
+import com.google.javascript.rhino.jstype.FunctionType;
+import com.google.javascript.rhino.jstype.JSType;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.List;
+
+/**
+ * Tests for {@link IntermediateStateSerializer}.
+ *
+ */
+public class IntermediateStateSerializerTest extends TestCase {
+
+  private static final List<SourceFile> EXTERNS = ImmutableList.of(
+      SourceFile.fromCode("externs.js",
+          "/** @constructor */ function Element() {}\n"
+          + "/** @param {string} id\n @return {Element} */\n"
+          + "function getElement(id) {}"));
+
+  private static final List<SourceFile> INPUTS = ImmutableList.of(
+      SourceFile.fromCode("a.js",
+          "/** @constructor\n @extends {Element} */\n"
+          + "function Sub() { Element.call(this); }\n"
+          + "/** @return {number} */\n"
+          + "Sub.prototype.f = function() { return 1; };"),
+      SourceFile.fromCode("b.js",
+          "var s = new Sub(); var x = s.f() + getElement('a').id;"));
+
+  public void testRoundTrip() throws IOException {
+    Compiler original = compile(newOptions());
+    Compiler restored = restore(write(original), newOptions());
+
+    assertEquals(original.toSource(), restored.toSource());
+    assertNull(original.getRoot().checkTreeEquals(restored.getRoot()));
+    assertEquals(original.getLifeCycleStage(), restored.getLifeCycleStage());
+    assertEquals(2, restored.getInputsForTesting().size());
+  }
+
+  public void testTypesReferToRestoredTree() throws IOException {
+    Compiler original = compile(newOptions());
+    Compiler restored = restore(write(original), newOptions());
+
+    // function Sub() {...}
+    Node fn = restored.getRoot().getLastChild().getFirstChild()
+        .getFirstChild();
+    FunctionType ctor = fn.getJSType().toMaybeFunctionType();
+    assertTrue(ctor.isConstructor());
+    assertSame(fn, ctor.getSource());
+    assertSame(fn.getJSDocInfo(), ctor.getJSDocInfo());
+    assertSame(fn, fn.getJSDocInfo().getAssociatedNode());
+    assertSame(ctor, restored.getTypeRegistry().getType("Sub")
+        .toObjectType().getConstructor());
+
+    // var s = new Sub();
+    Node newSub = restored.getRoot().getLastChild().getLastChild()
+        .getFirstChild().getFirstChild().getFirstChild();
+    JSType instance = newSub.getJSType();
+    assertSame(ctor.getInstanceType(), instance);
+    assertEquals("b.js", newSub.getSourceFileName());
+  }
+
+  public void testSmallerThanJavaSerialization() throws IOException {
+    Compiler original = compile(newOptions());
+    ByteArrayOutputStream java = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(java);
+    out.writeObject(original.getState());
+    out.close();
+
+    assertTrue(write(original).length < java.size());
+  }
+
+  public void testTimesReported() throws IOException {
+    CompilerOptions options = newOptions();
+    options.setTracer(CompilerOptions.TracerMode.TIMING_ONLY);
+    // The tracker of a finished compile no longer takes new times.
+    Compiler original = new Compiler();
+    original.init(EXTERNS, INPUTS, options);
+    original.parse();
+    byte[] state = write(original);
+    assertTrue(original.tracker.getStats().containsKey(
+        Compiler.WRITE_STATE_PASS_NAME));
+
+    Compiler restored = restore(state, options);
+    assertTrue(restored.tracker.getStats().containsKey(
+        Compiler.READ_STATE_PASS_NAME));
+  }
+
+  public void testInvalidStateRejected() {
+    Compiler compiler = new Compiler();
+    compiler.init(EXTERNS, INPUTS, newOptions());
+    try {
+      compiler.readState(new ByteArrayInputStream(new byte[] {1, 2, 3, 4}));
+      fail("Expected IOException");
+    } catch (IOException expected) {}
+  }
+
+  private static CompilerOptions newOptions() {
+    CompilerOptions options = new CompilerOptions();
+    WarningLevel.VERBOSE.setOptionsForWarningLevel(options);
+    return options;
+  }
+
+  private static Compiler compile(CompilerOptions options) {
+    Compiler compiler = new Compiler();
+    compiler.compile(EXTERNS, INPUTS, options);
+    return compiler;
+  }
+
+  private static byte[] write(Compiler compiler) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    compiler.writeState(bytes);
+    return bytes.toByteArray();
+  }
+
+  private static Compiler restore(byte[] state, CompilerOptions options)
+      throws IOException {
+    Compiler compiler = new Compiler();
+    compiler.init(EXTERNS, INPUTS, options);
+    compiler.readState(new ByteArrayInputStream(state));
+    return compiler;
+  }
+}
@@ -16,8 +16,10 @@
 
 package com.google.javascript.jscomp;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.javascript.jscomp.NodeTraversal.AbstractNodeTypePruningCallback;
+import com.google.javascript.rhino.IR;
 import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.Token;
 
@@ -191,6 +193,45 @@ public class NodeTraversalTest extends TestCase {
   }
 
 
+  public void testDeeplyNestedTreeDoesNotOverflow() {
+    Compiler compiler = new Compiler();
+    Node expr = IR.name("a");
+    int depth = 100000;
+    for (int i = 0; i < depth; i++) {
+      expr = IR.add(expr, IR.name("a"));
+    }
+    Node root = IR.script(IR.exprResult(expr));
+
+    final int[] visits = new int[1];
+    NodeTraversal.Callback counter =
+        new NodeTraversal.AbstractPostOrderCallback() {
+      @Override
+      public void visit(NodeTraversal t, Node n, Node parent) {
+        visits[0]++;
+      }
+    };
+    NodeTraversal.traverse(compiler, root, counter);
+    assertEquals(2 * depth + 3, visits[0]);
+  }
+
+  public void testSubtreeTypePruningCallbackSkipsFunctions() {
+    Compiler compiler = new Compiler();
+    Node tree = parse(compiler,
+        "function f() { return 1; } function g() { debugger; }");
+    final List<String> functions = new ArrayList<String>();
+    NodeTraversal.traverse(compiler, tree,
+        new NodeTraversal.AbstractSubtreeTypePruningCallback(
+            ImmutableSet.of(Token.DEBUGGER)) {
+          @Override
+          public void visit(NodeTraversal t, Node n, Node parent) {
+            if (n.isFunction()) {
+              functions.add(n.getFirstChild().getString());
+            }
+          }
+        });
+    assertEquals(ImmutableList.of("g"), functions);
+  }
+
   // Helper class used to test getCurrentNode
   private static class ExpectNodeOnEnterScope implements
       NodeTraversal.ScopedCallback {
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2013 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.collect.ImmutableList;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link ParallelFunctionLevelPass}.
+ *
+ */
+public class ParallelFunctionLevelPassTest extends TestCase {
+
+  private static final String EXTERNS = "function alert(x) {}";
+
+  public void testSameOutputAsSerial() {
+    assertSameAsSerial(
+        "function f(a) { var b = a; b = 3; if (a) { return 1; } else {"
+        + " return 2; } }"
+        + "var g = function(x) { var y; y = x + 1; return x; };"
+        + "(function() { alert(1 + 2); for (;;) { break; } })();"
+        + "alert(f(1), g(2));");
+  }
+
+  public void testSameOutputAsSerialWithNestedFunctions() {
+    assertSameAsSerial(
+        "function outer(a) {"
+        + "  function inner(b) { var c = b; c = 2; return b + 'x' + 'y'; }"
+        + "  var u; u = 1; return inner(a);"
+        + "}"
+        + "var obj = { m: function() { return this.x; }, n: function() {} };"
+        + "alert(outer(obj.m()), obj.n);");
+  }
+
+  public void testFunctionExpressionStaysExpression() {
+    // If the function were treated as a declaration, "g" would be a local
+    // of the function and the assignment to it would be dead.
+    assertSameAsSerial(
+        "var g = function() { g = 1; return 1; }; g(); alert(g);");
+  }
+
+  public void testErrorsReportedInInputOrder() {
+    String js = "function f() { return [1, 2][5]; }"
+        + "function g() { return [1][3]; } alert(f(), g());";
+    Compiler serial = compile(js, 1);
+    Compiler parallel = compile(js, 4);
+    assertEquals(2, serial.getErrorCount() + serial.getWarningCount());
+    assertEquals(
+        ImmutableList.copyOf(serial.getErrors()).toString(),
+        ImmutableList.copyOf(parallel.getErrors()).toString());
+    assertEquals(
+        ImmutableList.copyOf(serial.getWarnings()).toString(),
+        ImmutableList.copyOf(parallel.getWarnings()).toString());
+  }
+
+  public void testSkippingUnchangedFunctionsKeepsOutput() {
+    String js = "function f(a) { var b = a; b = 3; if (a) { return 1; }"
+        + " else { return 2; } }"
+        + "function g(x) { var y; y = x + 1; return 'a' + 'b' + x; }"
+        + "var h = function() { if (1) { alert(1 + 2); } };"
+        + "alert(f(1), g(2), h());";
+    for (int threads : new int[] {1, 4}) {
+      CompilerOptions options = newOptions(threads);
+      options.setSkipUnchangedFunctionsInLoops(true);
+      assertEquals(compile(js, options).toSource(),
+          compile(js, threads).toSource());
+    }
+  }
+
+  private void assertSameAsSerial(String js) {
+    Compiler serial = compile(js, 1);
+    Compiler parallel = compile(js, 4);
+    assertEquals(0, parallel.getErrorCount());
+    assertEquals(serial.toSource(), parallel.toSource());
+  }
+
+  private static Compiler compile(String js, int threads) {
+    return compile(js, newOptions(threads));
+  }
+
+  private static Compiler compile(String js, CompilerOptions options) {
+    Compiler compiler = new Compiler();
+    compiler.compile(
+        SourceFile.fromCode("externs.js", EXTERNS),
+        SourceFile.fromCode("input.js", js),
+        options);
+    return compiler;
+  }
+
+  private static CompilerOptions newOptions(int threads) {
+    CompilerOptions options = new CompilerOptions();
+    CompilationLevel.SIMPLE_OPTIMIZATIONS.setOptionsForCompilationLevel(
+        options);
+    options.setFunctionLevelPassThreads(threads);
+    return options;
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2013 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Tests for {@link PassProfile}.
+ *
+ */
+public class PassProfileTest extends TestCase {
+
+  private File directory;
+
+  @Override
+  protected void setUp() {
+    directory = Files.createTempDir();
+  }
+
+  @Override
+  protected void tearDown() {
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  public void testOrderByChangeRate() {
+    PassProfile profile = new PassProfile();
+    for (int i = 0; i < PassProfile.MIN_RUNS; i++) {
+      profile.record("slow", true, 100);
+      profile.record("fast", true, 1);
+      profile.record("never", false, 1);
+    }
+    assertOrder(profile, ImmutableList.of("never", "slow", "fast"),
+        ImmutableList.of("fast", "slow", "never"));
+  }
+
+  public void testUnknownPassKeepsOrder() {
+    PassProfile profile = new PassProfile();
+    for (int i = 0; i < PassProfile.MIN_RUNS; i++) {
+      profile.record("slow", true, 100);
+      profile.record("fast", true, 1);
+    }
+    profile.record("new", true, 1);
+    List<String> order = ImmutableList.of("slow", "new", "fast");
+    assertOrder(profile, order, order);
+  }
+
+  public void testUnproductive() {
+    PassProfile profile = new PassProfile();
+    for (int i = 1; i < PassProfile.MIN_RUNS; i++) {
+      profile.record("never", false, 1);
+    }
+    assertFalse(profile.isUnproductive("never"));
+    profile.record("never", false, 1);
+    assertTrue(profile.isUnproductive("never"));
+    assertFalse(profile.isUnproductive("unknown"));
+  }
+
+  public void testHalvingKeepsRareChanges() {
+    PassProfile profile = new PassProfile();
+    profile.record("rare", true, 1);
+    for (int i = 1; i < 2 * PassProfile.MIN_RUNS; i++) {
+      profile.record("rare", false, 1);
+    }
+    for (int i = 0; i < PassProfile.MAX_RUNS; i++) {
+      profile.record("busy", true, 1);
+    }
+    assertFalse(profile.isUnproductive("rare"));
+  }
+
+  public void testSaveAndLoad() {
+    File file = new File(directory, "profile");
+    PassProfile profile = new PassProfile();
+    for (int i = 0; i < PassProfile.MIN_RUNS; i++) {
+      profile.record("slow", true, 100);
+      profile.record("fast", true, 1);
+      profile.record("never", false, 1);
+    }
+    profile.save(file);
+
+    PassProfile loaded = PassProfile.load(file);
+    assertTrue(loaded.isUnproductive("never"));
+    assertOrder(loaded, ImmutableList.of("never", "slow", "fast"),
+        ImmutableList.of("fast", "slow", "never"));
+    assertEquals(1, directory.listFiles().length);
+  }
+
+  public void testMissingOrCorruptFileGivesEmptyProfile() throws IOException {
+    File file = new File(directory, "profile");
+    assertFalse(PassProfile.load(file).isUnproductive("x"));
+
+    Files.write("# pass profile v1\nx\t10\tmany\t1\n", file, Charsets.UTF_8);
+    assertFalse(PassProfile.load(file).isUnproductive("x"));
+  }
+
+  public void testCompilesUpdateProfile() {
+    File file = new File(directory, "profile");
+    CompilerOptions options = new CompilerOptions();
+    CompilationLevel.SIMPLE_OPTIMIZATIONS.setOptionsForCompilationLevel(
+        options);
+    options.setPassProfileFile(file.getPath());
+    String js = "function f(a) { if (a) { return 1 + 2; } } alert(f(1));";
+    String expected = null;
+    for (int i = 0; i < PassProfile.MIN_RUNS; i++) {
+      Compiler compiler = new Compiler();
+      compiler.compile(SourceFile.fromCode("externs.js", "function alert(x){}"),
+          SourceFile.fromCode("input.js", js), options);
+      if (expected == null) {
+        expected = compiler.toSource();
+      }
+      assertEquals(expected, compiler.toSource());
+    }
+    assertTrue(file.isFile());
+  }
+
+  private static void assertOrder(
+      PassProfile profile, List<String> before, List<String> after) {
+    List<String> order = Lists.newArrayList(before);
+    profile.order(order);
+    assertEquals(after, order);
+  }
+}
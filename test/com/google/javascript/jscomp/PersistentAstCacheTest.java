@@ -0,0 +1,215 @@
+/*
+ * Copyright 2013 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import com.google.javascript.rhino.IR;
+import com.google.javascript.rhino.InputId;
+import com.google.javascript.rhino.Node;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Tests for {@link PersistentAstCache}.
+ *
+ */
+public class PersistentAstCacheTest extends TestCase {
+
+  private static final String EXTERNS =
+      "/** @constructor */ function Element() {}\n"
+      + "/** @param {string} id\n @return {Element} */\n"
+      + "function getElement(id) {}";
+
+  private static final String INPUT =
+      "/** @fileoverview Example. */\n"
+      + "/** @constructor\n @extends {Element}\n @template T */\n"
+      + "function Sub() { Element.call(this); }\n"
+      + "/** @param {T} t\n @return {number} */\n"
+      + "Sub.prototype.f = function(t) { 'use strict'; return 'x' + t; };\n"
+      + "var s = new Sub(); s.f(getElement(3)); var o = {'a': 1, b: -0};";
+
+  private File directory;
+
+  @Override
+  protected void setUp() {
+    directory = Files.createTempDir();
+  }
+
+  @Override
+  protected void tearDown() {
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  public void testSecondCompileLoadsFromCache() {
+    Compiler uncached = compile(null, INPUT);
+    Compiler first = compile(directory, INPUT);
+    assertEquals(2, directory.listFiles().length);
+    long[] lastUsed = lastModifiedTimes();
+
+    Compiler second = compile(directory, INPUT);
+    assertEquals(2, directory.listFiles().length);
+    assertSameResult(uncached, first);
+    assertSameResult(uncached, second);
+    assertTrue(uncached.getWarningCount() > 0);
+
+    // Loading an AST counts as using it.
+    long[] used = lastModifiedTimes();
+    for (int i = 0; i < used.length; i++) {
+      assertTrue(used[i] >= lastUsed[i]);
+    }
+  }
+
+  public void testLoadedAstMatchesParse() {
+    Compiler compiler = newCompiler();
+    Node parsed = compiler.parseInputs().getLastChild().getFirstChild();
+    SourceFile file = getInputFile(compiler);
+    PersistentAstCache cache = new PersistentAstCache(directory, 1 << 20);
+
+    cache.store(file, INPUT, compiler.getParserConfig(), parsed);
+    Node loaded = cache.load(file, INPUT, compiler.getParserConfig());
+    assertNull(parsed.checkTreeEquals(loaded));
+    assertSame(file, loaded.getStaticSourceFile());
+
+    Node fn = loaded.getChildAtIndex(0);
+    assertTrue(fn.getJSDocInfo().isConstructor());
+    assertEquals(ImmutableList.of("T"),
+        fn.getJSDocInfo().getTemplateTypeNames());
+    assertEquals(parsed.getChildAtIndex(0).getJSDocInfo().getBaseType(),
+        fn.getJSDocInfo().getBaseType());
+    assertSame(fn, fn.getJSDocInfo().getAssociatedNode());
+  }
+
+  public void testDifferentCodeIsNotLoaded() {
+    SourceFile file = SourceFile.fromCode("input.js", INPUT);
+    Compiler compiler = newCompiler();
+    compiler.parseInputs();
+    PersistentAstCache cache = new PersistentAstCache(directory, 1 << 20);
+
+    cache.store(file, "var a;", compiler.getParserConfig(), IR.script());
+    assertNotNull(cache.load(file, "var a;", compiler.getParserConfig()));
+    assertNull(cache.load(file, "var b;", compiler.getParserConfig()));
+    assertNull(cache.load(SourceFile.fromCode("other.js", "var a;"),
+        "var a;", compiler.getParserConfig()));
+
+    CompilerOptions es5 = new CompilerOptions();
+    es5.setLanguageIn(CompilerOptions.LanguageMode.ECMASCRIPT5);
+    Compiler es5Compiler = new Compiler();
+    es5Compiler.initOptions(es5);
+    assertNull(cache.load(file, "var a;", es5Compiler.getParserConfig()));
+  }
+
+  public void testParseErrorsAreNotCached() {
+    String broken = "var a = ;";
+    Compiler first = compile(directory, broken);
+    assertEquals(1, first.getErrorCount());
+    assertEquals(1, directory.listFiles().length);
+    assertSameResult(first, compile(directory, broken));
+  }
+
+  public void testCorruptFileIsDiscarded() throws IOException {
+    compile(directory, INPUT);
+    for (File file : directory.listFiles()) {
+      Files.write(new byte[] {1, 2, 3}, file);
+    }
+
+    assertSameResult(compile(null, INPUT), compile(directory, INPUT));
+    for (File file : directory.listFiles()) {
+      assertTrue(file.length() > 3);
+    }
+  }
+
+  public void testLeastRecentlyUsedFilesAreDeleted() {
+    Compiler compiler = newCompiler();
+    Node root = compiler.parseInputs().getLastChild().getFirstChild();
+    SourceFile file = getInputFile(compiler);
+    PersistentAstCache unbounded = new PersistentAstCache(directory, 1 << 20);
+    unbounded.store(file, "1", compiler.getParserConfig(), root);
+    long size = directory.listFiles()[0].length();
+
+    PersistentAstCache cache = new PersistentAstCache(directory, size * 3);
+    for (int i = 2; i <= 4; i++) {
+      File[] before = directory.listFiles();
+      for (File f : before) {
+        f.setLastModified(f.lastModified() - 10000);
+      }
+      cache.store(file, String.valueOf(i), compiler.getParserConfig(), root);
+    }
+
+    assertTrue(directory.listFiles().length <= 3);
+    assertNull(cache.load(file, "1", compiler.getParserConfig()));
+    assertNotNull(cache.load(file, "4", compiler.getParserConfig()));
+  }
+
+  private static SourceFile getInputFile(Compiler compiler) {
+    return compiler.getInput(new InputId("input.js")).getSourceFile();
+  }
+
+  private long[] lastModifiedTimes() {
+    File[] files = directory.listFiles();
+    Arrays.sort(files);
+    long[] times = new long[files.length];
+    for (int i = 0; i < files.length; i++) {
+      times[i] = files[i].lastModified();
+    }
+    return times;
+  }
+
+  private static void assertSameResult(Compiler expected, Compiler actual) {
+    assertEquals(ImmutableList.copyOf(expected.getErrors()).toString(),
+        ImmutableList.copyOf(actual.getErrors()).toString());
+    assertEquals(ImmutableList.copyOf(expected.getWarnings()).toString(),
+        ImmutableList.copyOf(actual.getWarnings()).toString());
+    assertEquals(expected.toSource(), actual.toSource());
+  }
+
+  private static CompilerOptions newOptions(File cacheDirectory) {
+    CompilerOptions options = new CompilerOptions();
+    CompilationLevel.ADVANCED_OPTIMIZATIONS.setOptionsForCompilationLevel(
+        options);
+    WarningLevel.VERBOSE.setOptionsForWarningLevel(options);
+    if (cacheDirectory != null) {
+      options.setAstCacheDirectory(cacheDirectory.getPath());
+    }
+    return options;
+  }
+
+  private static Compiler newCompiler() {
+    Compiler compiler = new Compiler();
+    compiler.init(
+        ImmutableList.of(SourceFile.fromCode("externs.js", EXTERNS)),
+        ImmutableList.of(SourceFile.fromCode("input.js", INPUT)),
+        newOptions(null));
+    return compiler;
+  }
+
+  private static Compiler compile(File cacheDirectory, String js) {
+    Compiler compiler = new Compiler();
+    compiler.compile(
+        ImmutableList.of(SourceFile.fromCode("externs.js", EXTERNS)),
+        ImmutableList.of(SourceFile.fromCode("input.js", js)),
+        newOptions(cacheDirectory));
+    return compiler;
+  }
+}
@@ -16,6 +16,7 @@
 
 package com.google.javascript.jscomp;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.javascript.jscomp.CompilerOptions.TracerMode;
 import com.google.javascript.jscomp.PhaseOptimizer.Loop;
@@ -159,6 +160,81 @@ public class PhaseOptimizerTest extends TestCase {
     assertEquals(PhaseOptimizer.OPTIMAL_ORDER, passesRun);
   }
 
+  public void testProfileOrdersLoopPasses() {
+    PassProfile profile = new PassProfile();
+    for (int i = 0; i < PassProfile.MIN_RUNS; i++) {
+      profile.record("x", i == 0, 10);
+      profile.record("y", true, 1);
+    }
+    optimizer.setPassProfile(profile);
+    Loop loop = optimizer.addFixedPointLoop();
+    addLoopedPass(loop, "x", 1);
+    addLoopedPass(loop, "y", 0);
+    assertPasses("y", "x", "x", "y");
+  }
+
+  public void testUnproductivePassHeldBack() {
+    PassProfile profile = new PassProfile();
+    for (int i = 0; i < PassProfile.MIN_RUNS; i++) {
+      profile.record("y", false, 1);
+    }
+    optimizer.setPassProfile(profile);
+    Loop loop = optimizer.addFixedPointLoop();
+    addLoopedPass(loop, "x", 1);
+    addLoopedPass(loop, "y", 0);
+    assertPasses("x", "x", "y");
+  }
+
+  public void testHeldBackPassRunsWithoutOtherChanges() {
+    PassProfile profile = new PassProfile();
+    for (int i = 0; i < PassProfile.MIN_RUNS; i++) {
+      profile.record("y", false, 1);
+    }
+    optimizer.setPassProfile(profile);
+    Loop loop = optimizer.addFixedPointLoop();
+    addLoopedPass(loop, "x", 0);
+    addLoopedPass(loop, "y", 1);
+    assertPasses("x", "y", "y", "x");
+  }
+
+  public void testLoopStopsAfterDeadline() {
+    addOneTimePass("a");
+    Loop loop = optimizer.addFixedPointLoop();
+    addLoopedPass(loop, "x", 3);
+    loop.addLoopedPass(createPassFactory("y", new CompilerPass() {
+      @Override public void process(Node externs, Node root) {
+        passesRun.add("y");
+        compiler.reportCodeChange();
+        optimizer.setLoopDeadline(System.nanoTime());
+      }
+    }, false));
+    addLoopedPass(loop, "z", 3);
+    Loop loop2 = optimizer.addFixedPointLoop();
+    addLoopedPass(loop2, "w", 0);
+    addOneTimePass("b");
+    assertPasses("a", "x", "y", "b");
+    assertEquals(ImmutableList.of("x", "y", "z", "w"),
+        optimizer.getPassesCutByBudget());
+  }
+
+  public void testNoPassesCutWithinBudget() {
+    optimizer.setLoopDeadline(System.nanoTime() + 3600 * 1000000000L);
+    optimizer.setLoopHeapLimit(Long.MAX_VALUE);
+    Loop loop = optimizer.addFixedPointLoop();
+    addLoopedPass(loop, "x", 1);
+    assertPasses("x", "x");
+    assertTrue(optimizer.getPassesCutByBudget().isEmpty());
+  }
+
+  public void testLoopsSkippedOverHeapLimit() {
+    optimizer.setLoopHeapLimit(1);
+    Loop loop = optimizer.addFixedPointLoop();
+    addLoopedPass(loop, "x", 1);
+    addOneTimePass("a");
+    assertPasses("a");
+    assertEquals(ImmutableList.of("x"), optimizer.getPassesCutByBudget());
+  }
+
   public void testProgress() {
     final List<Double> progressList = Lists.newArrayList();
     compiler = new Compiler() {
@@ -1073,6 +1073,24 @@ public class ParserTest extends BaseJSTypeTestCase {
     parse("try {} catch (/** @type {Error} */ e) {}");
   }
 
+  public void testNamesAreSharedAcrossFiles() throws IOException {
+    Config config = ParserRunner.createConfig(true, mode, false);
+    Node first = ParserRunner.parse(new SimpleSourceFile("a", false),
+        "var x = {p1: 1}; x.p1;", config,
+        new TestErrorReporter(null, null), Logger.getAnonymousLogger()).ast;
+    Node second = ParserRunner.parse(new SimpleSourceFile("b", false),
+        "var y = x.p1;", config,
+        new TestErrorReporter(null, null), Logger.getAnonymousLogger()).ast;
+
+    Node var = first.getFirstChild().getFirstChild();
+    Node key = var.getFirstChild().getFirstChild();
+    Node get = second.getFirstChild().getFirstChild().getFirstChild();
+    assertEquals("x", get.getFirstChild().getString());
+    assertSame(var.getString(), get.getFirstChild().getString());
+    assertEquals("p1", get.getLastChild().getString());
+    assertSame(key.getString(), get.getLastChild().getString());
+  }
+
   /**
    * Verify that the given code has the given parse errors.
    * @return If in IDE mode, returns a partial tree.
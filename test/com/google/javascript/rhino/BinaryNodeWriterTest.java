@@ -0,0 +1,264 @@
+/*
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Rhino code, released
+ * May 6, 1999.
+ *
+ * The Initial Developer of the Original Code is
+ * Netscape Communications Corporation.
+ * Portions created by the Initial Developer are Copyright (C) 1997-1999
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *   Google Inc.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU General Public License Version 2 or later (the "GPL"), in which
+ * case the provisions of the GPL are applicable instead of those above. If
+ * you wish to allow use of your version of this file only under the terms of
+ * the GPL and not to allow others to use your version of this file under the
+ * MPL, indicate your decision by deleting the provisions above and replacing
+ * them with the notice and other provisions required by the GPL. If you do
+ * not delete the provisions above, a recipient may use your version of this
+ * file under either the MPL or the GPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+
+package com.google.javascript.rhino;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.javascript.rhino.JSDocInfo.Visibility;
+import com.google.javascript.rhino.jstype.JSTypeNative;
+import com.google.javascript.rhino.jstype.JSTypeRegistry;
+import com.google.javascript.rhino.jstype.SimpleSourceFile;
+import com.google.javascript.rhino.jstype.StaticSourceFile;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Tests for {@link BinaryNodeWriter} and {@link BinaryNodeReader}.
+ *
+ */
+public class BinaryNodeWriterTest extends TestCase {
+
+  private final StaticSourceFile sourceFile =
+      new SimpleSourceFile("source.js", false);
+  private final StaticSourceFile otherSourceFile =
+      new SimpleSourceFile("other.js", false);
+
+  public void testTree() throws IOException {
+    Node root = IR.script(
+        IR.var(IR.name("a"), IR.string("a\uD800b")),
+        IR.exprResult(IR.call(IR.name("f"), IR.number(-0.0),
+            IR.number(1.5), IR.number(7), IR.number(1e300))),
+        IR.function(IR.name("g"), IR.paramList(IR.name("x")), IR.block()));
+    root.getFirstChild().setLineno(3);
+    root.getFirstChild().setCharno(17);
+    root.getFirstChild().getFirstChild().putProp(
+        Node.ORIGINALNAME_PROP, "original");
+    root.getLastChild().setLength(30);
+    root.getLastChild().getLastChild().setDirectives(
+        ImmutableSet.of("use strict"));
+    root.setInputId(new InputId("input"));
+    root.setStaticSourceFile(sourceFile);
+
+    Node copy = roundTrip(root);
+    assertNull(root.checkTreeEquals(copy));
+    assertEquals("a\uD800b",
+        copy.getFirstChild().getFirstChild().getFirstChild().getString());
+    assertEquals(3, copy.getFirstChild().getLineno());
+    assertEquals(17, copy.getFirstChild().getCharno());
+    assertEquals(30, copy.getLastChild().getLength());
+    assertEquals(ImmutableSet.of("use strict"),
+        copy.getLastChild().getLastChild().getDirectives());
+    assertEquals("input", copy.getInputId().getIdName());
+    assertSame(otherSourceFile, copy.getStaticSourceFile());
+
+    Node numbers = copy.getFirstChild().getNext().getFirstChild();
+    assertEquals(Double.doubleToRawLongBits(-0.0), Double.doubleToRawLongBits(
+        numbers.getChildAtIndex(1).getDouble()));
+    assertEquals(1e300, numbers.getLastChild().getDouble());
+  }
+
+  public void testNaN() throws IOException {
+    assertTrue(Double.isNaN(roundTrip(IR.number(Double.NaN)).getDouble()));
+  }
+
+  public void testJSDocInfo() throws IOException {
+    Node fn = IR.function(IR.name("f"), IR.paramList(IR.name("x")),
+        IR.block());
+    Node root = IR.script(IR.exprResult(fn));
+
+    JSDocInfoBuilder builder = new JSDocInfoBuilder(false);
+    builder.recordConstructor();
+    builder.recordVisibility(Visibility.PROTECTED);
+    builder.recordParameter("x", typeExpr("string"));
+    builder.recordBaseType(typeExpr("Base"));
+    builder.recordImplementedInterface(typeExpr("Iface"));
+    builder.recordTemplateTypeNames(ImmutableList.of("T"));
+    builder.recordSuppressions(ImmutableSet.of("visibility"));
+    builder.recordDeprecationReason("old");
+    JSDocInfo info = builder.build(fn);
+    fn.setJSDocInfo(info);
+    // The same JSDoc on two nodes stays shared.
+    root.getFirstChild().setJSDocInfo(info);
+
+    Node copy = roundTrip(root);
+    Node fnCopy = copy.getFirstChild().getFirstChild();
+    JSDocInfo infoCopy = fnCopy.getJSDocInfo();
+    assertSame(infoCopy, copy.getFirstChild().getJSDocInfo());
+    assertSame(fnCopy, infoCopy.getAssociatedNode());
+    assertTrue(infoCopy.isConstructor());
+    assertEquals(Visibility.PROTECTED, infoCopy.getVisibility());
+    assertEquals(info.getParameterType("x"), infoCopy.getParameterType("x"));
+    assertEquals(info.getBaseType(), infoCopy.getBaseType());
+    assertEquals(info.getImplementedInterfaces(),
+        infoCopy.getImplementedInterfaces());
+    assertEquals(ImmutableList.of("T"), infoCopy.getTemplateTypeNames());
+    assertEquals(ImmutableSet.of("visibility"), infoCopy.getSuppressions());
+    assertEquals("old", infoCopy.getDeprecationReason());
+    assertFalse(infoCopy.hasReturnType());
+  }
+
+  public void testStringsAndJSDocSharedAcrossTrees() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    BinaryNodeWriter writer = new BinaryNodeWriter(bytes, sourceFile);
+    writer.writeTree(IR.name("someLongName"));
+    int firstSize = bytes.size();
+    writer.writeTree(IR.name("someLongName"));
+    writer.flush();
+    assertTrue(bytes.size() - firstSize < firstSize);
+
+    BinaryNodeReader reader = new BinaryNodeReader(
+        new ByteArrayInputStream(bytes.toByteArray()), sourceFile);
+    assertEquals("someLongName", reader.readTree().getString());
+    assertEquals("someLongName", reader.readTree().getString());
+  }
+
+  public void testTypedTreeRejected() throws IOException {
+    Node n = IR.name("a");
+    n.setJSType(new JSTypeRegistry(null).getNativeType(
+        JSTypeNative.NUMBER_TYPE));
+    assertRejected(n);
+  }
+
+  public void testOtherSourceFileRejected() throws IOException {
+    Node n = IR.name("a");
+    n.setStaticSourceFile(otherSourceFile);
+    assertRejected(n);
+  }
+
+  public void testDocumentationRejected() throws IOException {
+    JSDocInfoBuilder builder = new JSDocInfoBuilder(true);
+    builder.recordBlockDescription("Some text");
+    Node n = IR.name("a");
+    n.setJSDocInfo(builder.build(n));
+    assertRejected(n);
+  }
+
+  public void testExternalObjects() throws IOException {
+    JSTypeRegistry registry = new JSTypeRegistry(null);
+    Node name = IR.name("a");
+    name.setJSType(registry.getNativeType(JSTypeNative.NUMBER_TYPE));
+    name.setStaticSourceFile(otherSourceFile);
+    Node detached = IR.name("b");
+    JSDocInfoBuilder builder = new JSDocInfoBuilder(false);
+    builder.recordConstancy();
+    name.setJSDocInfo(builder.build(detached));
+    Node root = IR.script(IR.exprResult(name));
+    root.setJSType(registry.getNativeType(JSTypeNative.NUMBER_TYPE));
+    root.setStaticSourceFile(sourceFile);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    BinaryNodeWriter writer = new BinaryNodeWriter(bytes);
+    writer.writeTree(root);
+    writer.flush();
+    assertEquals(
+        ImmutableList.<Object>of(
+            registry.getNativeType(JSTypeNative.NUMBER_TYPE),
+            sourceFile, detached, otherSourceFile),
+        writer.getExternalObjects());
+    assertEquals(2, writer.getNodeIndex(name));
+    assertEquals(-1, writer.getNodeIndex(detached));
+    assertEquals(0, writer.getJSDocIndex(name.getJSDocInfo()));
+
+    BinaryNodeReader reader = new BinaryNodeReader(
+        new ByteArrayInputStream(bytes.toByteArray()));
+    Node copy = reader.readTree();
+    Node nameCopy = reader.getNode(2);
+    assertEquals("a", nameCopy.getString());
+    assertNull(nameCopy.getJSType());
+    assertSame(nameCopy.getJSDocInfo(), reader.getJSDocInfo(0));
+
+    reader.setExternalObjects(writer.getExternalObjects());
+    assertSame(root.getJSType(), copy.getJSType());
+    assertSame(sourceFile, copy.getStaticSourceFile());
+    assertSame(name.getJSType(), nameCopy.getJSType());
+    assertSame(otherSourceFile, nameCopy.getStaticSourceFile());
+    assertSame(detached, nameCopy.getJSDocInfo().getAssociatedNode());
+    assertNull(copy.getFirstChild().getJSType());
+  }
+
+  public void testNodesNumberedAcrossTrees() throws IOException {
+    Node first = IR.exprResult(IR.name("a"));
+    Node second = IR.name("b");
+    JSDocInfoBuilder builder = new JSDocInfoBuilder(false);
+    builder.recordConstancy();
+    second.setJSDocInfo(builder.build(first));
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    BinaryNodeWriter writer = new BinaryNodeWriter(bytes);
+    writer.writeTree(first);
+    writer.writeTree(second);
+    writer.flush();
+    assertEquals(2, writer.getNodeIndex(second));
+    assertTrue(writer.getExternalObjects().isEmpty());
+
+    BinaryNodeReader reader = new BinaryNodeReader(
+        new ByteArrayInputStream(bytes.toByteArray()));
+    Node firstCopy = reader.readTree();
+    Node secondCopy = reader.readTree();
+    assertSame(firstCopy, secondCopy.getJSDocInfo().getAssociatedNode());
+  }
+
+  private void assertRejected(Node n) throws IOException {
+    try {
+      new BinaryNodeWriter(new ByteArrayOutputStream(), sourceFile)
+          .writeTree(n);
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException expected) {}
+  }
+
+  private static JSTypeExpression typeExpr(String name) {
+    return new JSTypeExpression(
+        new Node(Token.BANG, Node.newString(name)), "source.js");
+  }
+
+  private Node roundTrip(Node root) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    BinaryNodeWriter writer = new BinaryNodeWriter(bytes, sourceFile);
+    writer.writeTree(root);
+    writer.flush();
+    return new BinaryNodeReader(
+        new ByteArrayInputStream(bytes.toByteArray()), otherSourceFile)
+        .readTree();
+  }
+}
@@ -45,6 +45,8 @@ import com.google.javascript.rhino.testing.TestErrorReporter;
 
 import junit.framework.TestCase;
 
+import java.util.Arrays;
+
 public class NodeTest extends TestCase {
   public void testMergeExtractNormal() throws Exception {
     testMergeExtract(5, 6);
@@ -280,6 +282,46 @@ public class NodeTest extends TestCase {
     assertEquals(2, m.getIntProp(Node.SIDE_EFFECT_FLAGS));
   }
 
+  public void testFlagProps() {
+    Node n = getVarRef("a");
+    JSDocInfo info = new JSDocInfo();
+    n.setJSDocInfo(info);
+    n.setLength(7);
+    n.putBooleanProp(Node.FREE_CALL, true);
+    n.putIntProp(Node.SIDE_EFFECT_FLAGS, 3);
+    assertSame(info, n.getProp(Node.JSDOC_INFO_PROP));
+    assertEquals(7, n.getLength());
+    assertTrue(n.getBooleanProp(Node.FREE_CALL));
+    assertEquals(1, n.getExistingIntProp(Node.FREE_CALL));
+    assertTrue(Arrays.equals(
+        new int[] {Node.JSDOC_INFO_PROP, Node.SIDE_EFFECT_FLAGS,
+            Node.FREE_CALL, Node.LENGTH},
+        n.getSortedPropTypes()));
+
+    Node m = new Node(Token.TRUE).clonePropsFrom(n);
+    assertSame(info, m.getJSDocInfo());
+    assertEquals(7, m.getLength());
+    assertTrue(m.getBooleanProp(Node.FREE_CALL));
+
+    n.removeProp(Node.JSDOC_INFO_PROP);
+    n.setLength(0);
+    n.putBooleanProp(Node.FREE_CALL, false);
+    assertNull(n.getJSDocInfo());
+    assertTrue(Arrays.equals(
+        new int[] {Node.SIDE_EFFECT_FLAGS}, n.getSortedPropTypes()));
+    assertSame(info, m.getJSDocInfo());
+    assertTrue(m.getBooleanProp(Node.FREE_CALL));
+  }
+
+  public void testFlagPropWithOtherValue() {
+    Node n = getVarRef("a");
+    n.putIntProp(Node.IS_CONSTANT_NAME, 2);
+    assertEquals(2, n.getIntProp(Node.IS_CONSTANT_NAME));
+    n.putBooleanProp(Node.IS_CONSTANT_NAME, true);
+    assertEquals(1, n.getIntProp(Node.IS_CONSTANT_NAME));
+    assertEquals(1, n.getSortedPropTypes().length);
+  }
+
   public void testBooleanProp() {
     Node n = getVarRef("a");
 
@@ -404,6 +446,89 @@ public class NodeTest extends TestCase {
         IR.getprop(IR.call(IR.name("a")), IR.string("b")).getQualifiedName());
   }
 
+  public void testCloneTree() {
+    Node fn = IR.function(IR.name("f"), IR.paramList(IR.name("a")),
+        IR.block(IR.returnNode(IR.add(IR.name("a"), IR.number(1)))));
+    Node script = IR.script(IR.exprResult(fn), IR.empty());
+    Node clone = script.cloneTree();
+    assertNull(clone.checkTreeEquals(script));
+    assertNull(clone.getParent());
+    assertSame(clone, clone.getLastChild().getParent());
+    Node cloneFn = clone.getFirstChild().getFirstChild();
+    assertNotSame(fn, cloneFn);
+    assertSame(clone.getFirstChild(), cloneFn.getParent());
+  }
+
+  public void testCloneDeepTree() {
+    Node expr = IR.name("x");
+    for (int i = 0; i < 100000; i++) {
+      expr = IR.not(expr);
+    }
+    Node clone = expr.cloneTree();
+    int depth = 0;
+    for (Node n = clone; n.hasChildren(); n = n.getFirstChild()) {
+      assertSame(n, n.getFirstChild().getParent());
+      depth++;
+    }
+    assertEquals(100000, depth);
+  }
+
+  public void testChangesMarkEnclosingFunctions() {
+    Node name = IR.name("x");
+    Node inner = IR.function(IR.name("g"), IR.paramList(),
+        IR.block(IR.exprResult(name)));
+    Node outer = IR.function(IR.name("f"), IR.paramList(),
+        IR.block(IR.exprResult(inner)));
+    Node script = IR.script(IR.exprResult(outer));
+    assertFalse(outer.isChangedFunction());
+    assertFalse(inner.isChangedFunction());
+
+    name.setString("y");
+    assertTrue(inner.isChangedFunction());
+    assertTrue(outer.isChangedFunction());
+
+    // Clearing a function clears the functions in it, and a later change
+    // marks them all again.
+    outer.clearChangedFunction();
+    assertFalse(inner.isChangedFunction());
+    name.getParent().replaceChild(name, IR.number(1));
+    assertTrue(inner.isChangedFunction());
+    assertTrue(outer.isChangedFunction());
+
+    // Clearing a function leaves the functions around it marked.
+    inner.clearChangedFunction();
+    assertTrue(outer.isChangedFunction());
+    inner.getLastChild().getFirstChild().getFirstChild().setDouble(2);
+    assertTrue(inner.isChangedFunction());
+    assertTrue(outer.isChangedFunction());
+
+    outer.clearChangedFunction();
+    script.addChildToBack(IR.exprResult(IR.name("z")));
+    assertFalse(outer.isChangedFunction());
+    assertFalse(inner.isChangedFunction());
+
+    // Props are not tracked.
+    outer.getLastChild().putBooleanProp(Node.IS_CONSTANT_NAME, true);
+    inner.putProp(Node.ORIGINALNAME_PROP, "g");
+    assertFalse(outer.isChangedFunction());
+    assertFalse(inner.isChangedFunction());
+    outer.getLastChild().addChildToBack(IR.empty());
+    assertTrue(outer.isChangedFunction());
+    assertFalse(inner.isChangedFunction());
+  }
+
+  public void testChangedFunctionIsNotAProp() {
+    Node fn = IR.function(IR.name("f"), IR.paramList(), IR.block());
+    fn.getLastChild().addChildToBack(IR.empty());
+    assertTrue(fn.isChangedFunction());
+    assertEquals(0, fn.getSortedPropTypes().length);
+    Node other = new Node(Token.FUNCTION);
+    other.clonePropsFrom(fn);
+    assertFalse(other.isChangedFunction());
+    fn.clonePropsFrom(other);
+    assertTrue(fn.isChangedFunction());
+  }
+
   private static Node getVarRef(String name) {
     return Node.newString(Token.NAME, name);
   }
@@ -0,0 +1,180 @@
+/*
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Rhino code, released
+ * May 6, 1999.
+ *
+ * The Initial Developer of the Original Code is
+ * Netscape Communications Corporation.
+ * Portions created by the Initial Developer are Copyright (C) 1997-1999
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *   Nick Santos
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU General Public License Version 2 or later (the "GPL"), in which
+ * case the provisions of the GPL are applicable instead of those above. If
+ * you wish to allow use of your version of this file only under the terms of
+ * the GPL and not to allow others to use your version of this file under the
+ * MPL, indicate your decision by deleting the provisions above and replacing
+ * them with the notice and other provisions required by the GPL. If you do
+ * not delete the provisions above, a recipient may use your version of this
+ * file under either the MPL or the GPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+
+package com.google.javascript.rhino;
+
+import com.google.common.collect.ImmutableSet;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link SubtreeSummaries}.
+ *
+ */
+public class SubtreeSummariesTest extends TestCase {
+
+  private final SubtreeSummaries summaries = new SubtreeSummaries();
+
+  public void testSubtreeTypes() {
+    Node regexp = IR.regexp(IR.string("a"));
+    Node inner = IR.function(IR.name("g"), IR.paramList(),
+        IR.block(IR.exprResult(IR.name("x"))));
+    Node outer = IR.function(IR.name("f"), IR.paramList(),
+        IR.block(IR.exprResult(inner)));
+    Node script = IR.script(IR.exprResult(outer), IR.exprResult(regexp));
+    long[] regexpMask = mask(Token.REGEXP);
+    long[] callMask = mask(Token.CALL);
+    assertTrue(summaries.hasTypeInSubtree(script, regexpMask));
+    assertFalse(summaries.hasTypeInSubtree(outer, regexpMask));
+    assertFalse(summaries.hasTypeInSubtree(outer, callMask));
+    assertTrue(summaries.hasTypeInSubtree(outer, mask(Token.NAME)));
+
+    // Changes in a nested function are seen by the functions around it.
+    Node name = inner.getLastChild().getFirstChild().getFirstChild();
+    name.getParent().replaceChild(name, IR.call(IR.name("y")));
+    assertTrue(summaries.hasTypeInSubtree(outer, callMask));
+    assertTrue(summaries.hasTypeInSubtree(script, callMask));
+
+    regexp.getParent().detachFromParent();
+    assertFalse(summaries.hasTypeInSubtree(script, regexpMask));
+  }
+
+  public void testChangesInChangedFunctionsAreSeen() {
+    Node name = IR.name("x");
+    Node inner = IR.function(IR.name("g"), IR.paramList(),
+        IR.block(IR.exprResult(name)));
+    Node outer = IR.function(IR.name("f"), IR.paramList(),
+        IR.block(IR.exprResult(inner)));
+    Node script = IR.script(IR.exprResult(outer));
+    name.setString("y");
+    assertTrue(inner.isChangedFunction());
+
+    long[] callMask = mask(Token.CALL);
+    assertFalse(summaries.hasTypeInSubtree(script, callMask));
+    name.getParent().replaceChild(name, IR.call(IR.name("y")));
+    assertTrue(summaries.hasTypeInSubtree(outer, callMask));
+    assertTrue(summaries.hasTypeInSubtree(script, callMask));
+  }
+
+  public void testSubtreeTypesOfTokensWithFarApartValues() {
+    // These tokens are 64 apart, so they would share a bit of a single long.
+    Node fn = IR.function(IR.name("f"), IR.paramList(),
+        IR.block(IR.exprResult(IR.and(IR.name("a"), IR.name("b"))),
+            IR.exprResult(
+                new Node(Token.DIV, IR.name("a"), IR.name("b")))));
+    assertFalse(summaries.hasTypeInSubtree(fn, mask(Token.CALL)));
+    assertFalse(summaries.hasTypeInSubtree(fn, mask(Token.DEBUGGER)));
+    assertTrue(summaries.hasTypeInSubtree(fn, mask(Token.DIV)));
+  }
+
+  public void testSummaryIsNotKeptOnTheNode() {
+    Node fn = IR.function(IR.name("f"), IR.paramList(), IR.block());
+    assertFalse(summaries.hasTypeInSubtree(fn, mask(Token.CALL)));
+    assertTrue(fn.hasCurrentSummary());
+    assertEquals(0, fn.getSortedPropTypes().length);
+
+    // A node with the props of the function has no summary of its own.
+    Node other = new Node(Token.FUNCTION, IR.name("g"), IR.paramList(),
+        IR.block(IR.exprResult(IR.call(IR.name("h")))));
+    other.clonePropsFrom(fn);
+    assertFalse(other.hasCurrentSummary());
+    assertTrue(summaries.hasTypeInSubtree(other, mask(Token.CALL)));
+  }
+
+  public void testCloneHasItsOwnSummary() {
+    Node fn = IR.function(IR.name("f"), IR.paramList(IR.name("a")),
+        IR.block(IR.returnNode(IR.add(IR.name("a"), IR.number(1)))));
+    Node script = IR.script(IR.exprResult(fn), IR.empty());
+    long[] addMask = mask(Token.ADD);
+    assertTrue(summaries.hasTypeInSubtree(script, addMask));
+    Node cloneFn = script.cloneTree().getFirstChild().getFirstChild();
+    assertTrue(summaries.hasTypeInSubtree(cloneFn, addMask));
+
+    cloneFn.getLastChild().addChildToBack(
+        IR.exprResult(IR.call(IR.name("g"))));
+    long[] callMask = mask(Token.CALL);
+    assertTrue(summaries.hasTypeInSubtree(cloneFn, callMask));
+    assertFalse(summaries.hasTypeInSubtree(fn, callMask));
+  }
+
+  public void testStructuralHash() {
+    Node a = IR.exprResult(IR.add(IR.name("x"), IR.number(1)));
+    Node b = IR.exprResult(IR.add(IR.name("x"), IR.number(1)));
+    assertEquals(hash(a), hash(b));
+
+    // A change is seen by the hashes of the nodes above it.
+    Node name = b.getFirstChild().getFirstChild();
+    name.setString("y");
+    assertFalse(hash(a) == hash(b));
+    name.setString("x");
+    assertEquals(hash(a), hash(b));
+
+    assertFalse(hash(IR.number(0)) == hash(IR.number(-0.0)));
+  }
+
+  public void testStructuralHashOfFunctions() {
+    Node inner = IR.function(IR.name("g"), IR.paramList(),
+        IR.block(IR.returnNode(IR.name("x"))));
+    Node outer = IR.function(IR.name("f"), IR.paramList(),
+        IR.block(IR.exprResult(inner)));
+    Node other = outer.cloneTree();
+    int hash = hash(outer);
+    assertEquals(hash, hash(other));
+
+    // A change in a nested function is seen by the hash of the function
+    // around it.
+    inner.getLastChild().getFirstChild().getFirstChild().setString("y");
+    assertFalse(hash == hash(outer));
+
+    // Functions with a different shape do not have the same hash.
+    assertFalse(
+        hash(IR.function(IR.name("f"), IR.paramList(IR.name("a")),
+            IR.block()))
+        == hash(IR.function(IR.name("f"), IR.paramList(),
+            IR.block(IR.exprResult(IR.name("a"))))));
+  }
+
+  private static long[] mask(int type) {
+    return SubtreeSummaries.getTypeMask(ImmutableSet.of(type));
+  }
+
+  private int hash(Node n) {
+    return summaries.getStructuralHash(n);
+  }
+}
@@ -269,6 +269,34 @@ public class JSTypeRegistryTest extends TestCase {
     assertTrue(type instanceof AllType);
   }
 
+  public void testEqualUnionsAreShared() {
+    JSTypeRegistry typeRegistry = new JSTypeRegistry(null);
+    JSType union = typeRegistry.createUnionType(
+        JSTypeNative.STRING_TYPE, JSTypeNative.NUMBER_TYPE);
+    assertSame(union, typeRegistry.createUnionType(
+        JSTypeNative.STRING_TYPE, JSTypeNative.NUMBER_TYPE));
+    assertSame(union,
+        typeRegistry.createOptionalType(union).restrictByNotNullOrUndefined());
+    assertSame(union, typeRegistry.createUnionType(
+        JSTypeNative.NUMBER_TYPE, JSTypeNative.STRING_TYPE));
+    assertNotSame(union, typeRegistry.createUnionType(
+        JSTypeNative.NUMBER_TYPE, JSTypeNative.BOOLEAN_TYPE));
+  }
+
+  public void testEqualTemplatizedTypesAreShared() {
+    JSTypeRegistry typeRegistry = new JSTypeRegistry(null);
+    ObjectType array = typeRegistry.getNativeObjectType(
+        JSTypeNative.ARRAY_TYPE);
+    JSType string = typeRegistry.getNativeType(JSTypeNative.STRING_TYPE);
+    JSType number = typeRegistry.getNativeType(JSTypeNative.NUMBER_TYPE);
+    TemplatizedType arrayOfString =
+        typeRegistry.createTemplatizedType(array, string);
+    assertSame(arrayOfString,
+        typeRegistry.createTemplatizedType(array, string));
+    assertNotSame(arrayOfString,
+        typeRegistry.createTemplatizedType(array, number));
+  }
+
   private void assertTypeEquals(JSType a, JSType b) {
     Asserts.assertTypeEquals(a, b);
   }
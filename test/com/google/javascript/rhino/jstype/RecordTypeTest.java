@@ -62,6 +62,38 @@ public class RecordTypeTest extends BaseJSTypeTestCase {
     Asserts.assertEquivalenceOperations(record, loop);
   }
 
+  public void testSubtypeCache() {
+    JSType record = new RecordTypeBuilder(registry)
+        .addProperty("a", NUMBER_TYPE, null)
+        .addProperty("b", STRING_TYPE, null)
+        .build();
+    JSType smallRecord = new RecordTypeBuilder(registry)
+        .addProperty("a", NUMBER_TYPE, null)
+        .build();
+    assertTrue(record.isSubtype(smallRecord));
+
+    // Defining properties on other types keeps the result.
+    ObjectType obj = registry.createAnonymousObjectType(null);
+    obj.defineDeclaredProperty("c", NUMBER_TYPE, null);
+    long hits = registry.getSubtypeCacheHitCount();
+    long misses = registry.getSubtypeCacheMissCount();
+    assertTrue(record.isSubtype(smallRecord));
+    assertEquals(hits + 1, registry.getSubtypeCacheHitCount());
+    assertEquals(misses, registry.getSubtypeCacheMissCount());
+  }
+
+  public void testSubtypeOfRecordIsNotCached() {
+    ObjectType obj = registry.createAnonymousObjectType(null);
+    JSType record = new RecordTypeBuilder(registry)
+        .addProperty("a", NUMBER_TYPE, null)
+        .build();
+    assertFalse(obj.isSubtype(record));
+
+    // The relation depends on the properties of obj, which can change.
+    obj.defineDeclaredProperty("a", NUMBER_TYPE, null);
+    assertTrue(obj.isSubtype(record));
+  }
+
   public void testLongToString() {
     JSType record = new RecordTypeBuilder(registry)
         .addProperty("a1", NUMBER_TYPE, null)